@@ -0,0 +1,268 @@
+// Batch mode for bulk files of classic 9x9 puzzles
+// Three stages joined by bounded queues: one thread parses the input, a pool of workers solves, and one thread
+// writes the solutions back out in input order. A permit is taken per puzzle when it is parsed and given back
+// when it is written, so a slow puzzle holds up at most that many finished ones waiting for their turn
+//
+// Input can mix two formats:
+//   81 characters per line, row by row, with 0 or . for an empty cell
+//   the "row col value" triplets of the sudokuInput files, one puzzle per block, blocks separated by a blank line
+// Output is one line per puzzle, the 81 digits of its solution or "No solution"
+//
+// Usage: java BatchSolver <input> <output> [threads]
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class BatchSolver {
+    private static final int SIZE = Sudoku.SIZE;
+    private static final int CELLS = SIZE * SIZE;
+
+    final int threads;
+    final int queueCapacity; // puzzles waiting between two stages, and puzzles in flight at once
+
+    public BatchSolver(int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one worker thread");
+        if (queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public BatchSolver(int threads) {
+        this(threads, 1024);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchSolver <input> <output> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Stats stats = new BatchSolver(threads).run(Paths.get(args[0]), Paths.get(args[1]));
+        if (stats != null) System.out.println(stats);
+    }
+
+    // One puzzle moving through the stages, seq is its position in the input
+    private static final class Job {
+        final long seq;
+        final int[][] board;
+        int[][] solution;
+        long solveNanos;
+
+        Job(long seq, int[][] board) {
+            this.seq = seq;
+            this.board = board;
+        }
+    }
+
+    // Marks the end of the input on a queue
+    private static final Job END = new Job(-1, null);
+
+    // Throughput and per-puzzle solve latency of one run
+    public static final class Stats {
+        public final long puzzles;
+        public final long solved;
+        public final long elapsedNanos;
+        public final long p50Nanos;
+        public final long p99Nanos;
+
+        Stats(long puzzles, long solved, long elapsedNanos, long p50Nanos, long p99Nanos) {
+            this.puzzles = puzzles;
+            this.solved = solved;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public double puzzlesPerSecond() {
+            return elapsedNanos == 0 ? 0 : puzzles * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d puzzles (%d solved) in %.1f ms, %.0f puzzles/sec, solve latency p50 %.1f us, p99 %.1f us",
+                    puzzles, solved, elapsedNanos / 1e6, puzzlesPerSecond(), p50Nanos / 1e3, p99Nanos / 1e3);
+        }
+    }
+
+    // Solve every puzzle of input into output, returning the run's stats, or null if a file could not be opened
+    public Stats run(Path input, Path output) {
+        BlockingQueue<Job> parsed = new ArrayBlockingQueue<Job>(queueCapacity);
+        BlockingQueue<Job> solved = new ArrayBlockingQueue<Job>(queueCapacity);
+        Semaphore inFlight = new Semaphore(queueCapacity);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 2);
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.US_ASCII)) {
+            long start = System.nanoTime();
+            Future<Long> parse = pool.submit(() -> parse(reader, parsed, inFlight));
+            ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) workers.add(pool.submit(() -> solve(parsed, solved)));
+            Future<long[]> write = pool.submit(() -> write(writer, solved, inFlight));
+
+            // Every worker stops on its own END, then the writer is told no more results are coming
+            long puzzles = parse.get();
+            for (Future<?> worker : workers) worker.get();
+            solved.put(END);
+            long[] latencies = write.get();
+
+            long elapsed = System.nanoTime() - start;
+            long solvedCount = latencies[latencies.length - 1];
+            long[] sorted = Arrays.copyOf(latencies, latencies.length - 1);
+            Arrays.sort(sorted);
+            return new Stats(puzzles, solvedCount, elapsed, percentile(sorted, 50), percentile(sorted, 99));
+        } catch (IOException e) {
+            System.out.println("Bad File Path");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                System.out.println("An error occurred.");
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Parse stage, returns the number of puzzles read
+    // END goes out to every worker even if parsing fails, so the pool never waits on a queue that stays empty
+    private long parse(BufferedReader reader, BlockingQueue<Job> parsed, Semaphore inFlight) throws IOException, InterruptedException {
+        long seq = 0;
+        try {
+            int[][] triplets = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.length() == CELLS) {
+                    // A blank line or an 81-character puzzle ends any triplet block before it
+                    if (triplets != null) {
+                        submit(new Job(seq++, triplets), parsed, inFlight);
+                        triplets = null;
+                    }
+                    if (!line.isEmpty()) submit(new Job(seq++, parseLine(line, lineNumber)), parsed, inFlight);
+                    continue;
+                }
+                if (triplets == null) triplets = new int[SIZE][SIZE];
+                parseTriplet(line, lineNumber, triplets);
+            }
+            if (triplets != null) submit(new Job(seq++, triplets), parsed, inFlight);
+            return seq;
+        } finally {
+            for (int i = 0; i < threads; i++) parsed.put(END);
+        }
+    }
+
+    private static void submit(Job job, BlockingQueue<Job> parsed, Semaphore inFlight) throws InterruptedException {
+        inFlight.acquire();
+        parsed.put(job);
+    }
+
+    static int[][] parseLine(String line, int lineNumber) {
+        int[][] board = new int[SIZE][SIZE];
+        for (int i = 0; i < CELLS; i++) {
+            char c = line.charAt(i);
+            if (c == '.') continue;
+            if (c < '0' || c > '9') throw new IllegalArgumentException("Line " + lineNumber + ": bad character '" + c + "'");
+            board[i / SIZE][i % SIZE] = c - '0';
+        }
+        return board;
+    }
+
+    static void parseTriplet(String line, int lineNumber, int[][] board) {
+        String[] vals = line.split("\\s+");
+        if (vals.length != 3) throw new IllegalArgumentException("Line " + lineNumber + ": expected 81 cells or \"row col value\"");
+        int row, col, value;
+        try {
+            row = Integer.parseInt(vals[0]);
+            col = Integer.parseInt(vals[1]);
+            value = Integer.parseInt(vals[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+        }
+        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE || value < 0 || value > SIZE) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": triplet out of range");
+        }
+        board[row][col] = value;
+    }
+
+    // Solve stage, run by every worker until it takes an END, on one Sudoku9Engine reloaded for each puzzle
+    private static Void solve(BlockingQueue<Job> parsed, BlockingQueue<Job> solved) throws InterruptedException {
+        Sudoku9Engine engine = new Sudoku9Engine();
+        while (true) {
+            Job job = parsed.take();
+            if (job == END) return null;
+            long start = System.nanoTime();
+            job.solution = engine.load(job.board) && engine.solve(Sudoku9Engine.CELLS) ? engine.toGrid() : null;
+            job.solveNanos = System.nanoTime() - start;
+            solved.put(job);
+        }
+    }
+
+    // Write stage, holds back results that finish early until every puzzle before them is written
+    // Returns the solve latency of every puzzle, with the number solved appended as the last entry
+    private static long[] write(BufferedWriter writer, BlockingQueue<Job> solved, Semaphore inFlight) throws IOException, InterruptedException {
+        HashMap<Long, Job> waiting = new HashMap<Long, Job>();
+        long[] latencies = new long[1024];
+        long next = 0;
+        long solvedCount = 0;
+        char[] line = new char[CELLS];
+        IOException failure = null; // after a failed write keep draining, so no other stage blocks on a full queue
+
+        while (true) {
+            Job job = solved.take();
+            if (job == END) break;
+            waiting.put(job.seq, job);
+            while ((job = waiting.remove(next)) != null) {
+                if (job.solution != null) solvedCount++;
+                if (failure == null) {
+                    try {
+                        if (job.solution == null) writer.write("No solution");
+                        else {
+                            for (int i = 0; i < CELLS; i++) line[i] = (char)('0' + job.solution[i / SIZE][i % SIZE]);
+                            writer.write(line);
+                        }
+                        writer.newLine();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+
+                if (next == latencies.length - 1) latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                latencies[(int)next++] = job.solveNanos;
+                inFlight.release();
+            }
+        }
+        if (failure != null) throw failure;
+        latencies = Arrays.copyOf(latencies, (int)next + 1);
+        latencies[(int)next] = solvedCount;
+        return latencies;
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int)Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,31 @@
+// SolutionWriter for the binary format, PuzzleLoader's NSDK header and packed cells, read back by PuzzleLoader
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+class BinarySolutionWriter implements SolutionWriter {
+    public void write(NDArray board, int gridSize, WritableByteChannel channel) throws IOException {
+        int[] shape = board.shape();
+        int bits = PuzzleLoader.bitsPerCell(gridSize);
+        ChannelOutput out = new ChannelOutput(channel);
+        out.buffer.put(PuzzleLoader.header(shape.length, gridSize));
+
+        int pending = -1; // high nibble waiting for its low half
+        for (int cell = 0; cell < board.size(); cell++) {
+            int value = board.get(cell);
+            if (value < 0 || value >= 1 << bits) throw new IllegalArgumentException("Value " + value + " does not fit in " + bits + " bits");
+            out.ensure(1);
+            if (bits == 8) out.put((byte)value);
+            else if (pending < 0) pending = value;
+            else {
+                out.put((byte)(pending << 4 | value));
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            out.ensure(1);
+            out.put((byte)(pending << 4));
+        }
+        out.flush();
+    }
+}
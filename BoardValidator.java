@@ -0,0 +1,94 @@
+// Checks boards against every Sudoku rule with a used-digit bitmask per unit, in one pass over the cells
+// A cell whose digit is already set in one of its units' masks is a repeat; with every cell filled and no
+// repeats, each unit holds each digit exactly once. Unlike the old row sums this rejects boards such as a row of 5s
+// The N-D check uses the same unit model as the solver (an axis line per axis, a subgrid per axis pair). Its
+// parallel mode scans chunks of cells into separate masks and merges them, a clash when merging being a repeat
+
+import java.util.stream.IntStream;
+
+final class BoardValidator {
+    static final int PARALLEL_CHUNK = 1 << 14; // fewest cells per task in parallel mode
+
+    private BoardValidator() {
+    }
+
+    // Full and legal 9x9 grid
+    static boolean isSolved(int[][] board) {
+        return check(board, false);
+    }
+
+    // No digit repeated in a row, column or box, empty (0) cells allowed
+    static boolean isConsistent(int[][] board) {
+        return check(board, true);
+    }
+
+    private static boolean check(int[][] board, boolean allowEmpty) {
+        int size = Sudoku.SIZE;
+        int sub = Sudoku.SUBGRIDSIZE;
+        if (board.length != size) return false;
+        int[] rows = new int[size];
+        int[] cols = new int[size];
+        int[] boxes = new int[size];
+        for (int row = 0; row < size; row++) {
+            if (board[row].length != size) return false;
+            for (int col = 0; col < size; col++) {
+                int value = board[row][col];
+                if (value == 0 && allowEmpty) continue;
+                if (value < 1 || value > size) return false;
+                int bit = 1 << value;
+                int box = (row / sub) * sub + col / sub;
+                if (((rows[row] | cols[col] | boxes[box]) & bit) != 0) return false;
+                rows[row] |= bit;
+                cols[col] |= bit;
+                boxes[box] |= bit;
+            }
+        }
+        return true;
+    }
+
+    // Full and legal N-D board of the given shape
+    static boolean isSolved(NDArray board, int dim, int size) {
+        return isSolved(board, dim, size, false);
+    }
+
+    static boolean isSolved(NDArray board, int dim, int size, boolean parallel) {
+        return check(board, dim, size, false, parallel);
+    }
+
+    // No digit repeated in any unit, empty (0) cells allowed
+    static boolean isConsistent(NDArray board, int dim, int size) {
+        return check(board, dim, size, true, false);
+    }
+
+    private static boolean check(NDArray board, int dim, int size, boolean allowEmpty, boolean parallel) {
+        int[] shape = board.shape();
+        if (shape.length != dim) return false;
+        for (int extent : shape) {
+            if (extent != size) return false;
+        }
+        int cells = board.size();
+        // Each chunk has masks for every unit, so keep to a few chunks per core however large the board
+        int chunkCells = Math.max(PARALLEL_CHUNK, cells / (4 * Runtime.getRuntime().availableProcessors()) + 1);
+        int chunks = (cells + chunkCells - 1) / chunkCells;
+        if (!parallel || chunks < 2) return scan(board, new CandidateMasks(dim, size), 0, cells, allowEmpty) != null;
+
+        CandidateMasks[] scanned = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> scan(board, new CandidateMasks(dim, size), c * chunkCells, Math.min(cells, (c + 1) * chunkCells), allowEmpty))
+                .toArray(CandidateMasks[]::new);
+        for (int c = 0; c < chunks; c++) {
+            if (scanned[c] == null || c > 0 && !scanned[0].mergeFrom(scanned[c])) return false;
+        }
+        return true;
+    }
+
+    // Place cells [from, to) into masks, returning them, or null on a value out of range or a repeat
+    private static CandidateMasks scan(NDArray board, CandidateMasks masks, int from, int to, boolean allowEmpty) {
+        for (int cell = from; cell < to; cell++) {
+            if (allowEmpty && (cell = board.nextFilled(cell)) >= to) break;
+            int value = board.get(cell);
+            if (value < 1 || value > masks.gridSize || !masks.isCandidate(cell, value)) return null;
+            masks.place(cell, value);
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,345 @@
+// Candidate engine for nSudoku
+// Keeps a used-digit bitmask for every axis line and every axis-pair subgrid of the board,
+// so the candidates of a cell are found with a few OR operations instead of rescanning its units
+// The constraint model itself (the units through each cell, the cells of each unit and the peers of each cell) is
+// compiled into flat int tables keyed by flat cell index, so lookups in the search never redo coordinate
+// arithmetic. A table that would go over TABLE_BUDGET entries is skipped and its lookups are computed instead
+// The tables only depend on the board shape, so they are built once per shape and shared by every instance,
+// which keeps the solver copies of a parallel search cheap. The peer table is only built once something asks for peers
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+class CandidateMasks {
+    final int dimensions;
+    final int gridSize;
+    final int subGridSize;
+    final int cells;
+    final int words;         // longs per unit mask, more than one only for grid sizes over 64
+    final int unitsPerKind;  // every line axis and every subgrid pair has gridSize^(dimensions - 1) units
+    final int unitsPerCell;  // one line per axis plus one subgrid per pair of axes
+    final int peerCount;     // cells sharing at least one unit with a given cell
+
+    static final long TABLE_BUDGET = 1L << 23; // ints per table, 32 MB
+
+    // Tables of one board shape, read-only once built
+    private static final class Tables {
+        int[] unitTable;        // units through cell c at [c * unitsPerCell ..), null over budget
+        int[] unitMembers;      // cells of unit u at [u * gridSize ..), ascending, null over budget
+        volatile int[] peerTable; // peers of cell c at [c * peerCount ..), null until first needed or over budget
+    }
+    private static final ConcurrentHashMap<String, Tables> TABLES = new ConcurrentHashMap<String, Tables>();
+
+    private final Tables tables;
+    private final int[] unitTable;
+    private final int[] unitMembers;
+    private int[] peerTable;
+    private final boolean peersFit;
+    private final int[] unitSource;  // where unitOffset's ids are: unitTable, or the unitIds scratch without it
+
+    private final int[] multipliers;
+    private final int[] pairA;
+    private final int[] pairB;
+    private final long[] used;     // bit (v - 1) of a unit is set once digit v is placed in it
+    final long[] fullMask;         // every digit 1..gridSize
+    private final int[] coords;   // scratch for the cell being looked up
+    private final int[] unitIds;  // scratch for the units through that cell
+
+    CandidateMasks(int dim, int size) {
+        this.dimensions = dim;
+        this.gridSize = size;
+        this.subGridSize = (int)Math.sqrt(size);
+        this.words = (size + 63) >>> 6;
+        this.coords = new int[dim];
+
+        this.multipliers = new int[dim];
+        int count = 1;
+        for (int i = dim - 1; i >= 0; i--) {
+            multipliers[i] = count;
+            count *= size;
+        }
+        this.cells = count;
+        this.unitsPerKind = count / size;
+
+        // Axis pairs in the same order nSudoku has always registered them: (0,1), (0,2), ..., (1,2), ...
+        int pairs = dim * (dim - 1) / 2;
+        this.pairA = new int[pairs];
+        this.pairB = new int[pairs];
+        int p = 0;
+        for (int i = 0; i < dim; i++) {
+            for (int j = i + 1; j < dim; j++) {
+                pairA[p] = i;
+                pairB[p] = j;
+                p++;
+            }
+        }
+        this.unitsPerCell = dim + pairs;
+        this.unitIds = new int[unitsPerCell];
+        this.peerCount = dim * (size - 1) + pairs * (subGridSize - 1) * (subGridSize - 1);
+        this.used = new long[unitsPerCell * unitsPerKind * words];
+
+        this.fullMask = new long[words];
+        for (int v = 0; v < size; v++) fullMask[v >>> 6] |= 1L << v;
+
+        this.tables = TABLES.computeIfAbsent(dim + "x" + size, key -> buildUnitTables());
+        this.unitTable = tables.unitTable;
+        this.unitMembers = tables.unitMembers;
+        this.peerTable = tables.peerTable;
+        this.peersFit = (long)cells * peerCount <= TABLE_BUDGET;
+        this.unitSource = unitTable != null ? unitTable : unitIds;
+    }
+
+    private Tables buildUnitTables() {
+        Tables built = new Tables();
+        if ((long)cells * unitsPerCell > TABLE_BUDGET) return built;
+        built.unitTable = new int[cells * unitsPerCell];
+        built.unitMembers = new int[cells * unitsPerCell];
+        int[] filled = new int[unitsPerCell * unitsPerKind];
+        for (int cell = 0; cell < cells; cell++) {
+            fillUnits(cell);
+            System.arraycopy(unitIds, 0, built.unitTable, cell * unitsPerCell, unitsPerCell);
+            // Cells are visited in ascending order, so every member list comes out ascending
+            for (int k = 0; k < unitsPerCell; k++) {
+                int unit = unitIds[k];
+                built.unitMembers[unit * gridSize + filled[unit]++] = cell;
+            }
+        }
+        return built;
+    }
+
+    // The shared peer table, built by the first instance that needs it
+    private int[] peerTable() {
+        if (peerTable != null || !peersFit) return peerTable;
+        synchronized (tables) {
+            if (tables.peerTable == null) {
+                int[] table = new int[cells * peerCount];
+                int[] scratch = new int[peerCount];
+                for (int cell = 0; cell < cells; cell++) {
+                    computePeers(cell, scratch);
+                    System.arraycopy(scratch, 0, table, cell * peerCount, peerCount);
+                }
+                tables.peerTable = table;
+            }
+        }
+        peerTable = tables.peerTable;
+        return peerTable;
+    }
+
+    // Offset of a cell's unit ids in unitSource, computing them into the scratch array when there is no table
+    private int unitOffset(int cell) {
+        if (unitTable != null) return cell * unitsPerCell;
+        fillUnits(cell);
+        return 0;
+    }
+
+    // Rebuild every unit mask from the values on a board
+    void load(NDArray board) {
+        Arrays.fill(used, 0L);
+        for (int cell = board.nextFilled(0); cell < cells; cell = board.nextFilled(cell + 1)) place(cell, board.get(cell));
+    }
+
+    void copyFrom(CandidateMasks other) {
+        System.arraycopy(other.used, 0, this.used, 0, used.length);
+    }
+
+    // OR another instance's unit masks into this one, false if both have the same digit in the same unit
+    boolean mergeFrom(CandidateMasks other) {
+        long clash = 0;
+        for (int i = 0; i < used.length; i++) {
+            clash |= used[i] & other.used[i];
+            used[i] |= other.used[i];
+        }
+        return clash == 0;
+    }
+
+    int flatIndex(int[] index) {
+        int flat = 0;
+        for (int i = 0; i < dimensions; i++) flat += index[i] * multipliers[i];
+        return flat;
+    }
+
+    // Ids of every unit through a cell, written into unitIds: first the line along each axis, then the subgrid of each axis pair
+    private void fillUnits(int cell) {
+        int flat = cell;
+        for (int i = 0; i < dimensions; i++) {
+            coords[i] = flat / multipliers[i];
+            flat -= coords[i] * multipliers[i];
+        }
+        for (int i = 0; i < dimensions; i++) {
+            int stride = multipliers[i];
+            unitIds[i] = i * unitsPerKind + (cell / (stride * gridSize)) * stride + cell % stride;
+        }
+        for (int p = 0; p < pairA.length; p++) {
+            int a = pairA[p];
+            int b = pairB[p];
+            int rest = 0;
+            for (int i = 0; i < dimensions; i++) {
+                if (i != a && i != b) rest = rest * gridSize + coords[i];
+            }
+            unitIds[dimensions + p] = (dimensions + p) * unitsPerKind + rest * gridSize
+                    + (coords[a] / subGridSize) * subGridSize + coords[b] / subGridSize;
+        }
+    }
+
+    // Ids of every unit through a cell, in the same order as unitCells' k
+    void units(int cell, int[] out) {
+        int off = unitOffset(cell);
+        System.arraycopy(unitSource, off, out, 0, unitsPerCell);
+    }
+
+    // The gridSize cells of unit k through a cell, written into out
+    void unitCells(int cell, int k, int[] out) {
+        if (unitMembers != null) {
+            System.arraycopy(unitMembers, unitTable[cell * unitsPerCell + k] * gridSize, out, 0, gridSize);
+            return;
+        }
+        int flat = cell;
+        for (int i = 0; i < dimensions; i++) {
+            coords[i] = flat / multipliers[i];
+            flat -= coords[i] * multipliers[i];
+        }
+        int n = 0;
+        if (k < dimensions) {
+            int base = cell - coords[k] * multipliers[k];
+            for (int j = 0; j < gridSize; j++) out[n++] = base + j * multipliers[k];
+            return;
+        }
+        int a = pairA[k - dimensions];
+        int b = pairB[k - dimensions];
+        int startA = (coords[a] / subGridSize) * subGridSize;
+        int startB = (coords[b] / subGridSize) * subGridSize;
+        int base = cell - coords[a] * multipliers[a] - coords[b] * multipliers[b];
+        for (int x = startA; x < startA + subGridSize; x++) {
+            for (int y = startB; y < startB + subGridSize; y++) out[n++] = base + x * multipliers[a] + y * multipliers[b];
+        }
+    }
+
+    // Digits already used in a unit, written into out[offset .. offset + words)
+    void usedIn(int unit, long[] out, int offset) {
+        System.arraycopy(used, unit * words, out, offset, words);
+    }
+
+    void place(int cell, int value) {
+        int word = (value - 1) >>> 6;
+        long bit = 1L << (value - 1);
+        int off = unitOffset(cell);
+        for (int k = 0; k < unitsPerCell; k++) used[unitSource[off + k] * words + word] |= bit;
+    }
+
+    void remove(int cell, int value) {
+        int word = (value - 1) >>> 6;
+        long bit = ~(1L << (value - 1));
+        int off = unitOffset(cell);
+        for (int k = 0; k < unitsPerCell; k++) used[unitSource[off + k] * words + word] &= bit;
+    }
+
+    boolean isCandidate(int cell, int value) {
+        int word = (value - 1) >>> 6;
+        long bit = 1L << (value - 1);
+        int off = unitOffset(cell);
+        for (int k = 0; k < unitsPerCell; k++) {
+            if ((used[unitSource[off + k] * words + word] & bit) != 0) return false;
+        }
+        return true;
+    }
+
+    // Every peer of a cell written into out, each listed once; returns peerCount
+    // A peer differing in exactly one axis shares that line, one differing in exactly two shares their subgrid
+    int peers(int cell, int[] out) {
+        int[] table = peerTable();
+        if (table == null) return computePeers(cell, out);
+        System.arraycopy(table, cell * peerCount, out, 0, peerCount);
+        return peerCount;
+    }
+
+    private int computePeers(int cell, int[] out) {
+        int flat = cell;
+        for (int i = 0; i < dimensions; i++) {
+            coords[i] = flat / multipliers[i];
+            flat -= coords[i] * multipliers[i];
+        }
+        int n = 0;
+        for (int i = 0; i < dimensions; i++) {
+            int base = cell - coords[i] * multipliers[i];
+            for (int j = 0; j < gridSize; j++) {
+                if (j != coords[i]) out[n++] = base + j * multipliers[i];
+            }
+        }
+        for (int p = 0; p < pairA.length; p++) {
+            int a = pairA[p];
+            int b = pairB[p];
+            int startA = (coords[a] / subGridSize) * subGridSize;
+            int startB = (coords[b] / subGridSize) * subGridSize;
+            int base = cell - coords[a] * multipliers[a] - coords[b] * multipliers[b];
+            for (int x = startA; x < startA + subGridSize; x++) {
+                if (x == coords[a]) continue;
+                for (int y = startB; y < startB + subGridSize; y++) {
+                    if (y != coords[b]) out[n++] = base + x * multipliers[a] + y * multipliers[b];
+                }
+            }
+        }
+        return n;
+    }
+
+    // Number of candidates of a cell
+    int candidateCount(int cell) {
+        if (words == 1) return Long.bitCount(candidates(cell));
+        int total = 0;
+        int off = unitOffset(cell);
+        for (int w = 0; w < words; w++) {
+            long taken = 0;
+            for (int k = 0; k < unitsPerCell; k++) taken |= used[unitSource[off + k] * words + w];
+            total += Long.bitCount(fullMask[w] & ~taken);
+        }
+        return total;
+    }
+
+    // Candidates of a cell when the whole digit range fits in one long
+    long candidates(int cell) {
+        long taken = 0;
+        int off = unitOffset(cell);
+        for (int k = 0; k < unitsPerCell; k++) taken |= used[unitSource[off + k]];
+        return fullMask[0] & ~taken;
+    }
+
+    // Candidates of a cell for any grid size, written into out[offset .. offset + words)
+    void candidates(int cell, long[] out, int offset) {
+        if (words == 1) {
+            out[offset] = candidates(cell);
+            return;
+        }
+        for (int w = 0; w < words; w++) out[offset + w] = 0;
+        int off = unitOffset(cell);
+        for (int k = 0; k < unitsPerCell; k++) {
+            int base = unitSource[off + k] * words;
+            for (int w = 0; w < words; w++) out[offset + w] |= used[base + w];
+        }
+        for (int w = 0; w < words; w++) out[offset + w] = fullMask[w] & ~out[offset + w];
+    }
+
+    // Helpers for walking multi-word masks
+
+    static boolean isEmpty(long[] mask, int offset, int words) {
+        for (int w = 0; w < words; w++) {
+            if (mask[offset + w] != 0) return false;
+        }
+        return true;
+    }
+
+    static int count(long[] mask, int offset, int words) {
+        int total = 0;
+        for (int w = 0; w < words; w++) total += Long.bitCount(mask[offset + w]);
+        return total;
+    }
+
+    // Smallest digit >= fromValue present in the mask, or -1 if there is none
+    static int nextValue(long[] mask, int offset, int words, int fromValue) {
+        int bit = fromValue - 1;
+        for (int w = bit >>> 6; w < words; w++) {
+            long m = mask[offset + w];
+            if (w == bit >>> 6) m &= -1L << bit;
+            if (m != 0) return (w << 6) + Long.numberOfTrailingZeros(m) + 1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,343 @@
+// Canonical form of a clue set under the symmetries of the N-D board, so puzzles that are the same up to digit
+// relabeling, axis permutation, band swaps or swaps within a band share one cache key
+// Every axis line and every axis-pair subgrid stays a line or a subgrid when the axes are permuted, when the bands
+// (groups of subGridSize coordinates) of an axis are permuted, when the coordinates inside a band are permuted
+// and when digits are relabeled, so any such transform maps solutions to solutions (for 2D these are the usual
+// transpose, band/stack swaps, row/column swaps within them and relabeling)
+//
+// The canonical form is found by ordering each axis's planes, bands and the axes themselves by invariants of the
+// clues (counts, weighted by how full the other planes through each clue are and how often its digit occurs),
+// trying every ordering of the groups those invariants leave tied, within a work limit, and keeping the
+// lexicographically smallest transformed clue list, its digits relabeled in order of first appearance.
+// Whatever it picks is a real symmetry of the board, so equal forms always mean equivalent puzzles. Ties past
+// the work limit keep their original order, so a very regular clue set can miss an equivalent one, never match a
+// wrong one
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+final class CanonicalForm {
+    static final long MAX_WORK = 1L << 18; // coordinates transformed per canonicalization at most
+
+    final int dimensions;
+    final int gridSize;
+    final long[] clues;  // canonical flat index << 8 | canonical digit, ascending
+    final long hash;
+
+    private final int[] axisOrder;  // original axis that becomes canonical axis k
+    private final int[] axisPosition; // canonical axis that original axis a becomes
+    private final int[][] order;    // order[a][y], original coordinate that becomes y on original axis a
+    private final int[] digitMap;   // original digit -> canonical digit, 0 -> 0
+    private final int[] digitBack;  // canonical digit -> original digit
+
+    private CanonicalForm(int dim, int size, long[] clues, int[] axisOrder, int[][] order, int[] digitMap) {
+        this.dimensions = dim;
+        this.gridSize = size;
+        this.clues = clues;
+        this.axisOrder = axisOrder;
+        this.axisPosition = new int[dim];
+        for (int k = 0; k < dim; k++) axisPosition[axisOrder[k]] = k;
+        this.order = order;
+        this.digitMap = digitMap;
+        this.digitBack = new int[size + 1];
+        for (int v = 0; v <= size; v++) digitBack[digitMap[v]] = v;
+
+        long h = 0xcbf29ce484222325L ^ dim * 31L ^ size;
+        for (long clue : clues) h = (h ^ clue) * 0x100000001b3L;
+        this.hash = h;
+    }
+
+    static CanonicalForm of(NDArray board, int dim, int size) {
+        return new Canonicalizer(board, dim, size).run();
+    }
+
+    // Board in canonical coordinates and digits, e.g. a solution of the original puzzle to store under this form
+    NDArray toCanonical(NDArray board) {
+        NDArray out = new NDArray(PuzzleLoader.shape(dimensions, gridSize));
+        int[] y = new int[dimensions];
+        for (int cell = 0; cell < out.size(); cell++) {
+            out.set(cell, digitMap[board.get(originalCell(y))]);
+            next(y);
+        }
+        return out;
+    }
+
+    // Board in the original coordinates and digits, e.g. a stored canonical solution mapped back to this puzzle
+    NDArray toOriginal(NDArray canonical) {
+        NDArray out = new NDArray(PuzzleLoader.shape(dimensions, gridSize));
+        int[] y = new int[dimensions];
+        for (int cell = 0; cell < canonical.size(); cell++) {
+            out.set(originalCell(y), digitBack[canonical.get(cell)]);
+            next(y);
+        }
+        return out;
+    }
+
+    // Flat index of the original cell that canonical coordinates y come from
+    private int originalCell(int[] y) {
+        int flat = 0;
+        for (int a = 0; a < dimensions; a++) flat = flat * gridSize + order[a][y[axisPosition[a]]];
+        return flat;
+    }
+
+    private void next(int[] y) {
+        for (int k = dimensions - 1; k >= 0 && ++y[k] == gridSize; k--) y[k] = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CanonicalForm)) return false;
+        CanonicalForm other = (CanonicalForm) o;
+        return hash == other.hash && dimensions == other.dimensions && gridSize == other.gridSize && Arrays.equals(clues, other.clues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    // Search for the canonical transform of one board
+    private static final class Canonicalizer {
+        final int dim;
+        final int size;
+        final int sub;
+        final int count;       // clues
+        final int[][] coords;  // coords[i], coordinates of clue i
+        final int[] values;
+
+        final int[] axisOrder;
+        final int[][] order;
+        final ArrayList<int[]> ties = new ArrayList<int[]>(); // {array id (-1 for axisOrder), from, to, block}: ranges tried in every order
+        long candidates = 1;
+
+        long[] best;
+        int[] bestAxisOrder;
+        int[][] bestOrder;
+        int[] bestDigits;
+        final long[] scratch;
+        final int[] digits;
+        final int[][] position; // inverse of order: original coordinate -> new coordinate
+
+        Canonicalizer(NDArray board, int dim, int size) {
+            this.dim = dim;
+            this.size = size;
+            this.sub = (int)Math.sqrt(size);
+            int n = 0;
+            for (int cell = board.nextFilled(0); cell < board.size(); cell = board.nextFilled(cell + 1)) n++;
+            this.count = n;
+            this.coords = new int[n][dim];
+            this.values = new int[n];
+            for (int cell = board.nextFilled(0), i = 0; cell < board.size(); cell = board.nextFilled(cell + 1), i++) {
+                for (int a = dim - 1, rest = cell; a >= 0; a--, rest /= size) coords[i][a] = rest % size;
+                values[i] = board.get(cell);
+            }
+            this.axisOrder = new int[dim];
+            this.order = new int[dim][size];
+            this.scratch = new long[n];
+            this.digits = new int[size + 1];
+            this.position = new int[dim][size];
+        }
+
+        CanonicalForm run() {
+            // Without clues every transform gives the same empty list
+            if (count > 0) orderByInvariants();
+            else {
+                for (int a = 0; a < dim; a++) axisOrder[a] = a;
+                for (int a = 0; a < dim; a++) for (int c = 0; c < size; c++) order[a][c] = c;
+            }
+            search(0);
+            return new CanonicalForm(dim, size, best, bestAxisOrder, bestOrder, bestDigits);
+        }
+
+        // Sort axes, bands and planes by their invariants, recording the ranges left tied
+        private void orderByInvariants() {
+            long[][] planeCount = new long[dim][size];
+            long[][] bandCount = new long[dim][size / sub];
+            long[] digitCount = new long[size + 1];
+            for (int i = 0; i < count; i++) {
+                digitCount[values[i]]++;
+                for (int a = 0; a < dim; a++) {
+                    planeCount[a][coords[i][a]]++;
+                    bandCount[a][coords[i][a] / sub]++;
+                }
+            }
+
+            // A clue's weight only depends on things every symmetry preserves
+            long[][][] weights = new long[dim][size][];
+            int[][] filled = new int[dim][size];
+            for (int a = 0; a < dim; a++) {
+                for (int c = 0; c < size; c++) weights[a][c] = new long[(int)planeCount[a][c]];
+            }
+            for (int i = 0; i < count; i++) {
+                long planes = 0;
+                long bands = 0;
+                for (int a = 0; a < dim; a++) {
+                    planes += planeCount[a][coords[i][a]];
+                    bands += bandCount[a][coords[i][a] / sub];
+                }
+                long weight = digitCount[values[i]] * 0x9E3779B97F4A7C15L + planes * 0xC2B2AE3D27D4EB4FL + bands;
+                for (int a = 0; a < dim; a++) weights[a][coords[i][a]][filled[a][coords[i][a]]++] = weight;
+            }
+
+            long[][] planeKey = new long[dim][size];
+            long[][] bandKey = new long[dim][size / sub];
+            long[] axisKey = new long[dim];
+            for (int a = 0; a < dim; a++) {
+                for (int c = 0; c < size; c++) planeKey[a][c] = mix(weights[a][c]);
+                for (int b = 0; b < size / sub; b++) bandKey[a][b] = mix(Arrays.copyOfRange(planeKey[a], b * sub, b * sub + sub));
+                axisKey[a] = mix(bandKey[a].clone());
+            }
+
+            sortBy(axisOrder, axisKey);
+            addTies(-1, 0, sortedKeys(axisOrder, axisKey));
+            // Axes in canonical order, so which ties fit in the work limit does not depend on the original axis order
+            for (int k = 0; k < dim; k++) {
+                int a = axisOrder[k];
+                int[] bands = new int[size / sub];
+                sortBy(bands, bandKey[a]);
+                for (int b = 0; b < bands.length; b++) {
+                    int[] planes = new int[sub];
+                    long[] keys = Arrays.copyOfRange(planeKey[a], bands[b] * sub, bands[b] * sub + sub);
+                    sortBy(planes, keys);
+                    for (int p = 0; p < sub; p++) order[a][b * sub + p] = bands[b] * sub + planes[p];
+                }
+                // Tied bands are tried in every order as whole blocks, tied planes inside a band one by one
+                addBandTies(a, bands, bandKey[a]);
+                for (int b = 0; b < bands.length; b++) addTies(a, b * sub, planeKeysInOrder(a, b, planeKey[a]));
+            }
+        }
+
+        private long[] planeKeysInOrder(int a, int band, long[] planeKey) {
+            long[] keys = new long[sub];
+            for (int p = 0; p < sub; p++) keys[p] = planeKey[order[a][band * sub + p]];
+            return keys;
+        }
+
+        private long[] sortedKeys(int[] ids, long[] key) {
+            long[] keys = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) keys[i] = key[ids[i]];
+            return keys;
+        }
+
+        // Order ids 0..n-1 by ascending key, original order among equal keys (insertion sort, n is at most the grid size)
+        private void sortBy(int[] ids, long[] key) {
+            for (int i = 0; i < ids.length; i++) {
+                int j = i;
+                while (j > 0 && key[ids[j - 1]] > key[i]) {
+                    ids[j] = ids[j - 1];
+                    j--;
+                }
+                ids[j] = i;
+            }
+        }
+
+        // Record runs of equal keys in keys (laid out from position from of the array) as ranges to permute
+        private void addTies(int array, int from, long[] keys) {
+            for (int i = 0; i < keys.length; ) {
+                int j = i + 1;
+                while (j < keys.length && keys[j] == keys[i]) j++;
+                if (j - i > 1) addTie(array, from + i, from + j, 1);
+                i = j;
+            }
+        }
+
+        private void addBandTies(int a, int[] bands, long[] bandKey) {
+            for (int i = 0; i < bands.length; ) {
+                int j = i + 1;
+                while (j < bands.length && bandKey[bands[j]] == bandKey[bands[i]]) j++;
+                if (j - i > 1) addTie(a, i * sub, j * sub, sub);
+                i = j;
+            }
+        }
+
+        // A tied range stays as sorted unless trying all its orders keeps the total work within MAX_WORK
+        private void addTie(int array, int from, int to, int block) {
+            long ways = 1;
+            for (int k = 2; k <= (to - from) / block; k++) ways *= k;
+            if (candidates * ways * (count + size) * dim > MAX_WORK) return;
+            candidates *= ways;
+            ties.add(new int[] { array, from, to, block });
+        }
+
+        // Try every order of the tied ranges from tie t on
+        private void search(int t) {
+            if (t == ties.size()) {
+                evaluate();
+                return;
+            }
+            int[] tie = ties.get(t);
+            int[] array = tie[0] < 0 ? axisOrder : order[tie[0]];
+            int block = tie[3];
+            int blocks = (tie[2] - tie[1]) / block;
+            int[] start = Arrays.copyOfRange(array, tie[1], tie[2]);
+            int[] perm = new int[blocks];
+            for (int i = 0; i < blocks; i++) perm[i] = i;
+            do {
+                for (int i = 0; i < blocks; i++) System.arraycopy(start, perm[i] * block, array, tie[1] + i * block, block);
+                search(t + 1);
+            } while (nextPermutation(perm));
+            System.arraycopy(start, 0, array, tie[1], start.length);
+        }
+
+        // Transform the clues by the current orders, relabel digits by first appearance and keep the smallest
+        private void evaluate() {
+            for (int a = 0; a < dim; a++) {
+                for (int y = 0; y < size; y++) position[a][order[a][y]] = y;
+            }
+            for (int i = 0; i < count; i++) {
+                long flat = 0;
+                for (int k = 0; k < dim; k++) flat = flat * size + position[axisOrder[k]][coords[i][axisOrder[k]]];
+                scratch[i] = flat << 8 | values[i];
+            }
+            Arrays.sort(scratch);
+
+            Arrays.fill(digits, 0);
+            int next = 1;
+            boolean smaller = best == null;
+            boolean decided = smaller;
+            for (int i = 0; i < count; i++) {
+                int value = (int)(scratch[i] & 0xFF);
+                if (digits[value] == 0) digits[value] = next++;
+                scratch[i] = scratch[i] & ~0xFFL | digits[value];
+                if (!decided && scratch[i] != best[i]) {
+                    if (scratch[i] > best[i]) return;
+                    smaller = decided = true;
+                }
+            }
+            if (!smaller) return;
+
+            // Digits missing from the clues take the labels left over, in ascending order
+            for (int v = 1; v <= size; v++) if (digits[v] == 0) digits[v] = next++;
+            best = scratch.clone();
+            bestAxisOrder = axisOrder.clone();
+            bestOrder = new int[dim][];
+            for (int a = 0; a < dim; a++) bestOrder[a] = order[a].clone();
+            bestDigits = digits.clone();
+        }
+
+        // Hash of a multiset of keys, the same whatever order they come in
+        private static long mix(long[] keys) {
+            Arrays.sort(keys);
+            long h = 0x9E3779B97F4A7C15L ^ keys.length;
+            for (long k : keys) {
+                h ^= k;
+                h *= 0xBF58476D1CE4E5B9L;
+                h ^= h >>> 31;
+            }
+            return h;
+        }
+
+        private static boolean nextPermutation(int[] p) {
+            int i = p.length - 2;
+            while (i >= 0 && p[i] >= p[i + 1]) i--;
+            if (i < 0) return false;
+            int j = p.length - 1;
+            while (p[j] <= p[i]) j--;
+            int t = p[i]; p[i] = p[j]; p[j] = t;
+            for (int l = i + 1, r = p.length - 1; l < r; l++, r--) {
+                t = p[l]; p[l] = p[r]; p[r] = t;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+// Variable ordering strategies for the nSudoku DLS
+// The search asks select() for the next cell to branch on and reports every fill and clear,
+// so each strategy can keep its own state up to date instead of rescanning the board
+
+interface CellOrdering {
+    void init(nSudoku sudoku);  // build state from the current board, before any search assignment
+    int select();               // next empty cell to branch on, or -1 once the board is full
+    void assigned(int cell);    // cell was just filled, candidate masks already updated
+    void unassigned(int cell);  // cell was just cleared, candidate masks already updated
+    CellOrdering copy();        // new ordering of the same kind, for another solver
+
+    static CellOrdering of(String name) {
+        switch (name.toLowerCase()) {
+            case "static": return new StaticOrdering();
+            case "mrv": return new MrvOrdering();
+            case "mrv-degree": return new MrvDegreeOrdering();
+            default: throw new IllegalArgumentException("Unknown cell ordering: " + name);
+        }
+    }
+}
+
+// Minimum remaining values: branch on the empty cell with the fewest candidates, lowest cell id on ties
+// Empty cells sit in one bucket per candidate count; each bucket is a bitset with a summary word per 64 words,
+// so selecting is a short scan and filling a cell only re-buckets its peers
+class MrvOrdering implements CellOrdering {
+    CandidateMasks masks;
+    int[] count;    // candidate count of each empty cell, -1 once filled
+    int[] size;     // cells in each bucket
+    long[] bits;    // bucket k occupies bits[k * bitWords .. (k + 1) * bitWords)
+    long[] summary; // bit w of bucket k's summary is set while word w of its bitset is non-zero
+    int bitWords;
+    int summaryWords;
+    int[] peers;
+
+    public void init(nSudoku sudoku) {
+        this.masks = sudoku.masks;
+        int cells = masks.cells;
+        int buckets = masks.gridSize + 1;
+        this.bitWords = (cells + 63) >>> 6;
+        this.summaryWords = (bitWords + 63) >>> 6;
+        this.count = new int[cells];
+        this.size = new int[buckets];
+        this.bits = new long[buckets * bitWords];
+        this.summary = new long[buckets * summaryWords];
+        this.peers = new int[masks.peerCount];
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (sudoku.cellValue(cell) != 0) count[cell] = -1;
+            else add(cell, masks.candidateCount(cell));
+        }
+    }
+
+    public int select() {
+        for (int k = 0; k < size.length; k++) {
+            if (size[k] > 0) return pick(k);
+        }
+        return -1;
+    }
+
+    // Choose among the cells of a non-empty bucket
+    int pick(int k) {
+        return firstIn(k, 0);
+    }
+
+    public void assigned(int cell) {
+        drop(cell);
+        count[cell] = -1;
+        recountPeers(cell);
+    }
+
+    public void unassigned(int cell) {
+        add(cell, masks.candidateCount(cell));
+        recountPeers(cell);
+    }
+
+    public CellOrdering copy() {
+        return new MrvOrdering();
+    }
+
+    void recountPeers(int cell) {
+        int n = masks.peers(cell, peers);
+        for (int i = 0; i < n; i++) {
+            int peer = peers[i];
+            if (count[peer] < 0) continue;
+            int updated = masks.candidateCount(peer);
+            if (updated != count[peer]) {
+                drop(peer);
+                add(peer, updated);
+            }
+        }
+    }
+
+    void add(int cell, int k) {
+        count[cell] = k;
+        size[k]++;
+        int w = cell >>> 6;
+        bits[k * bitWords + w] |= 1L << cell;
+        summary[k * summaryWords + (w >>> 6)] |= 1L << w;
+    }
+
+    void drop(int cell) {
+        int k = count[cell];
+        size[k]--;
+        int w = cell >>> 6;
+        int at = k * bitWords + w;
+        bits[at] &= ~(1L << cell);
+        if (bits[at] == 0) summary[k * summaryWords + (w >>> 6)] &= ~(1L << w);
+    }
+
+    // Lowest cell >= from in bucket k, or -1
+    int firstIn(int k, int from) {
+        int w = from >>> 6;
+        if (w >= bitWords) return -1;
+        long word = bits[k * bitWords + w] & (-1L << from);
+        if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+
+        // Skip to the next non-empty word through the summary
+        int next = w + 1;
+        for (int s = next >>> 6; s < summaryWords; s++) {
+            long sum = summary[k * summaryWords + s];
+            if (s == next >>> 6) sum &= -1L << next;
+            if (sum != 0) {
+                int word2 = (s << 6) + Long.numberOfTrailingZeros(sum);
+                return (word2 << 6) + Long.numberOfTrailingZeros(bits[k * bitWords + word2]);
+            }
+        }
+        return -1;
+    }
+}
+
+// MRV with ties broken by degree: the cell with the most empty peers constrains the rest of the board most
+class MrvDegreeOrdering extends MrvOrdering {
+    int[] degree; // empty peers of each cell
+
+    @Override
+    public void init(nSudoku sudoku) {
+        super.init(sudoku);
+        int cells = masks.cells;
+        this.degree = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int n = masks.peers(cell, peers);
+            for (int i = 0; i < n; i++) {
+                if (count[peers[i]] >= 0) degree[cell]++;
+            }
+        }
+    }
+
+    @Override
+    int pick(int k) {
+        int best = -1;
+        for (int cell = firstIn(k, 0); cell >= 0; cell = firstIn(k, cell + 1)) {
+            if (best < 0 || degree[cell] > degree[best]) best = cell;
+        }
+        return best;
+    }
+
+    @Override
+    public void assigned(int cell) {
+        super.assigned(cell);
+        shiftDegrees(cell, -1);
+    }
+
+    @Override
+    public void unassigned(int cell) {
+        super.unassigned(cell);
+        shiftDegrees(cell, 1);
+    }
+
+    @Override
+    public CellOrdering copy() {
+        return new MrvDegreeOrdering();
+    }
+
+    private void shiftDegrees(int cell, int delta) {
+        int n = masks.peers(cell, peers);
+        for (int i = 0; i < n; i++) degree[peers[i]] += delta;
+    }
+}
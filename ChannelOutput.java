@@ -0,0 +1,41 @@
+// Fixed-size buffer in front of a channel, with the number formatting the text formats need
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+class ChannelOutput {
+    static final int BUFFER_BYTES = 1 << 16;
+
+    final WritableByteChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    ChannelOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    // Drain the buffer unless it still has room for the next n bytes
+    void ensure(int n) throws IOException {
+        if (buffer.remaining() < n) flush();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    void put(byte b) {
+        buffer.put(b);
+    }
+
+    void put(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) buffer.put((byte)ascii.charAt(i));
+    }
+
+    // Decimal digits of a non-negative int
+    void putInt(int value) {
+        if (value >= 10) putInt(value / 10);
+        buffer.put((byte)('0' + value % 10));
+    }
+}
@@ -0,0 +1,191 @@
+// Snapshot of an nSudoku DLS in progress, for resuming a long search after the process is gone
+// The search state is the trail (every cell filled since the clues, with its value) and the frame stack (each
+// frame's cell, candidate mask, next candidate and trail mark), plus the counters. The ordering and propagation
+// keep nothing the board does not determine, so they are rebuilt from the restored board, and the resumed
+// search tries exactly the nodes the original would have tried from that point on
+//
+// File layout, big-endian:
+//   magic "NSCK", version, dimensions, grid size (2 bytes), mask words, puzzle hash (8 bytes),
+//   ordering class name (UTF), naked singles flag, hidden singles flag,
+//   frame capacity, nodes, backtracks, naked singles, hidden singles,
+//   trail size, then per entry cell (4 bytes) and value (1 byte),
+//   depth, then per frame cell, next, mark (4 bytes each) and mask words (8 bytes each)
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+class Checkpoint {
+    static final int MAGIC = 0x4E53434B; // "NSCK"
+    static final int VERSION = 1;
+
+    int dimensions;
+    int gridSize;
+    int words;
+    long puzzleHash;
+    String ordering;
+    boolean nakedSingles;
+    boolean hiddenSingles;
+    int frameCapacity;
+    long nodes;
+    long backtracks;
+    long nakedCount;
+    long hiddenCount;
+    int[] trail;
+    byte[] values;
+    int depth;
+    int[] frameCell;
+    int[] frameNext;
+    int[] frameMark;
+    long[] frameMask;
+
+    // Copy of a solver's search state between two nodes
+    static Checkpoint of(nSudoku sudoku) {
+        Checkpoint c = new Checkpoint();
+        c.dimensions = sudoku.dimensions;
+        c.gridSize = sudoku.gridSize;
+        c.words = sudoku.masks.words;
+        c.puzzleHash = hash(sudoku.org_board);
+        c.ordering = sudoku.ordering.getClass().getSimpleName();
+        c.nakedSingles = sudoku.propagator() != null && sudoku.propagator().nakedSingles;
+        c.hiddenSingles = sudoku.propagator() != null && sudoku.propagator().hiddenSingles;
+        c.frameCapacity = sudoku.frameCapacity;
+        c.nodes = sudoku.nodes;
+        c.backtracks = sudoku.backtracks;
+        c.nakedCount = sudoku.propagator() == null ? 0 : sudoku.propagator().nakedCount;
+        c.hiddenCount = sudoku.propagator() == null ? 0 : sudoku.propagator().hiddenCount;
+
+        c.trail = new int[sudoku.trailSize];
+        c.values = new byte[sudoku.trailSize];
+        for (int i = 0; i < sudoku.trailSize; i++) {
+            c.trail[i] = sudoku.trail[i];
+            c.values[i] = (byte)sudoku.cellValue(sudoku.trail[i]);
+        }
+        c.depth = sudoku.depth;
+        c.frameCell = Arrays.copyOf(sudoku.frameCell, c.depth);
+        c.frameNext = Arrays.copyOf(sudoku.frameNext, c.depth);
+        c.frameMark = Arrays.copyOf(sudoku.frameMark, c.depth);
+        c.frameMask = Arrays.copyOf(sudoku.frameMask, c.depth * c.words);
+        return c;
+    }
+
+    // Hash of the clues, so a checkpoint is never resumed on another puzzle
+    static long hash(NDArray board) {
+        long h = 0xcbf29ce484222325L;
+        for (int cell = 0; cell < board.size(); cell++) h = (h ^ board.get(cell)) * 0x100000001b3L;
+        return h;
+    }
+
+    // Throws if this checkpoint was not taken from a search of the same puzzle with the same settings
+    void check(nSudoku sudoku) {
+        if (dimensions != sudoku.dimensions || gridSize != sudoku.gridSize || puzzleHash != hash(sudoku.org_board)) {
+            throw new IllegalArgumentException("Checkpoint is for another puzzle");
+        }
+        boolean naked = sudoku.propagator() != null && sudoku.propagator().nakedSingles;
+        boolean hidden = sudoku.propagator() != null && sudoku.propagator().hiddenSingles;
+        if (!ordering.equals(sudoku.ordering.getClass().getSimpleName()) || naked != nakedSingles || hidden != hiddenSingles) {
+            throw new IllegalArgumentException("Checkpoint was taken with " + ordering + ", naked singles " + nakedSingles
+                    + ", hidden singles " + hiddenSingles);
+        }
+    }
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + trail.length * 5 + depth * (12 + words * 8));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(dimensions);
+        out.writeShort(gridSize);
+        out.writeByte(words);
+        out.writeLong(puzzleHash);
+        out.writeUTF(ordering);
+        out.writeBoolean(nakedSingles);
+        out.writeBoolean(hiddenSingles);
+        out.writeInt(frameCapacity);
+        out.writeLong(nodes);
+        out.writeLong(backtracks);
+        out.writeLong(nakedCount);
+        out.writeLong(hiddenCount);
+        out.writeInt(trail.length);
+        for (int i = 0; i < trail.length; i++) {
+            out.writeInt(trail[i]);
+            out.writeByte(values[i]);
+        }
+        out.writeInt(depth);
+        for (int f = 0; f < depth; f++) {
+            out.writeInt(frameCell[f]);
+            out.writeInt(frameNext[f]);
+            out.writeInt(frameMark[f]);
+            for (int w = 0; w < words; w++) out.writeLong(frameMask[f * words + w]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Checkpoint decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) throw new IllegalArgumentException("Not a checkpoint file");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+        Checkpoint c = new Checkpoint();
+        c.dimensions = in.readUnsignedByte();
+        c.gridSize = in.readUnsignedShort();
+        c.words = in.readUnsignedByte();
+        c.puzzleHash = in.readLong();
+        c.ordering = in.readUTF();
+        c.nakedSingles = in.readBoolean();
+        c.hiddenSingles = in.readBoolean();
+        c.frameCapacity = in.readInt();
+        c.nodes = in.readLong();
+        c.backtracks = in.readLong();
+        c.nakedCount = in.readLong();
+        c.hiddenCount = in.readLong();
+        int trailSize = in.readInt();
+        c.trail = new int[trailSize];
+        c.values = new byte[trailSize];
+        for (int i = 0; i < trailSize; i++) {
+            c.trail[i] = in.readInt();
+            c.values[i] = in.readByte();
+        }
+        c.depth = in.readInt();
+        if (c.depth > c.frameCapacity) throw new IllegalArgumentException("Corrupt checkpoint: depth " + c.depth + " over capacity");
+        c.frameCell = new int[c.depth];
+        c.frameNext = new int[c.depth];
+        c.frameMark = new int[c.depth];
+        c.frameMask = new long[c.depth * c.words];
+        for (int f = 0; f < c.depth; f++) {
+            c.frameCell[f] = in.readInt();
+            c.frameNext[f] = in.readInt();
+            c.frameMark[f] = in.readInt();
+            for (int w = 0; w < c.words; w++) c.frameMask[f * c.words + w] = in.readLong();
+        }
+        return c;
+    }
+
+    static Checkpoint read(String fileName) throws IOException {
+        return decode(Files.readAllBytes(Paths.get(fileName)));
+    }
+
+    // Write to a temporary file next to the target, flush it to disk and move it into place,
+    // so a crash at any point leaves either the previous checkpoint or this one, never half of one
+    void write(String fileName) throws IOException {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encode());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,54 @@
+// Writes checkpoints on a background thread, so the search only pays for copying its state
+// A periodic checkpoint due while the last one is still being written is skipped rather than queued
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class CheckpointWriter {
+    private final String fileName;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+
+    CheckpointWriter(String fileName) {
+        this.fileName = fileName;
+    }
+
+    // Queue a write, unless one is still running and force is false
+    void submit(Checkpoint checkpoint, boolean force) {
+        if (pending != null && !pending.isDone()) {
+            if (!force) return;
+            await();
+        }
+        pending = executor.submit(() -> {
+            try {
+                checkpoint.write(fileName);
+            } catch (IOException e) {
+                System.out.println("An error occurred.");
+            }
+        });
+    }
+
+    // Wait for the last write to finish
+    void await() {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    void close() {
+        await();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,249 @@
+// Dancing Links (Knuth's Algorithm X) backend for nSudoku
+// The board is compiled into an exact cover matrix with one column per empty cell, per (axis line, digit)
+// and per (axis-pair subgrid, digit) still open, and one row per (empty cell, candidate digit)
+// Links live in flat int arrays rather than node objects. Every row has the same width, so a row node's
+// left and right neighbours are found by arithmetic and only headers keep L/R links
+
+import java.util.Arrays;
+
+class DancingLinks {
+    final nSudoku sudoku;
+    final CandidateMasks masks;
+    final int width; // nodes per row: its cell column plus one (unit, digit) column per unit through the cell
+
+    int columns;      // header nodes are 1..columns, node 0 is the root
+    int rows;
+    int firstRowNode;
+
+    int[] L, R;       // header links
+    int[] U, D, C;    // vertical links and column of every node
+    int[] S;          // rows left in each column
+    int[] rowCell;
+    int[] rowDigit;
+
+    // Active columns bucketed by size, so an empty or single-row column is found without scanning the header list
+    int[] bucketHead;
+    int[] bucketNext;
+    int[] bucketPrev;
+
+    long rowsTried;
+    long updates;     // links removed or restored
+
+    DancingLinks(nSudoku sudoku) {
+        this.sudoku = sudoku;
+        this.masks = sudoku.masks;
+        this.width = 1 + masks.unitsPerCell;
+        build();
+    }
+
+    private void build() {
+        int g = masks.gridSize;
+        int[] units = new int[masks.unitsPerCell];
+        long[] cand = new long[masks.words];
+
+        // First pass numbers the open columns and counts the rows
+        // The cell columns come first, in row-major order, for chooseColumn
+        int[] cellColumn = new int[masks.cells];
+        int[] unitDigitColumn = new int[masks.unitsPerCell * masks.unitsPerKind * g];
+        for (int cell = 0; cell < masks.cells; cell++) {
+            if (sudoku.cellValue(cell) == 0) cellColumn[cell] = ++columns;
+        }
+        for (int cell = 0; cell < masks.cells; cell++) {
+            if (cellColumn[cell] == 0) continue;
+            masks.units(cell, units);
+            masks.candidates(cell, cand, 0);
+            for (int v = CandidateMasks.nextValue(cand, 0, masks.words, 1); v > 0; v = CandidateMasks.nextValue(cand, 0, masks.words, v + 1)) {
+                rows++;
+                for (int unit : units) {
+                    if (unitDigitColumn[unit * g + v - 1] == 0) unitDigitColumn[unit * g + v - 1] = ++columns;
+                }
+            }
+        }
+        // A digit missing from a unit with no candidate place left still needs its (empty) column
+        long[] used = new long[masks.words];
+        for (int unit = 0; unit < masks.unitsPerCell * masks.unitsPerKind; unit++) {
+            masks.usedIn(unit, used, 0);
+            for (int v = 1; v <= g; v++) {
+                boolean isUsed = (used[(v - 1) >>> 6] & (1L << (v - 1))) != 0;
+                if (!isUsed && unitDigitColumn[unit * g + v - 1] == 0) unitDigitColumn[unit * g + v - 1] = ++columns;
+            }
+        }
+
+        this.firstRowNode = columns + 1;
+        int nodes = firstRowNode + rows * width;
+        this.L = new int[columns + 1];
+        this.R = new int[columns + 1];
+        this.S = new int[columns + 1];
+        this.U = new int[nodes];
+        this.D = new int[nodes];
+        this.C = new int[nodes];
+        this.rowCell = new int[rows];
+        this.rowDigit = new int[rows];
+        for (int c = 0; c <= columns; c++) {
+            L[c] = c == 0 ? columns : c - 1;
+            R[c] = c == columns ? 0 : c + 1;
+            U[c] = c;
+            D[c] = c;
+            C[c] = c;
+        }
+
+        // Second pass links every row in at the bottom of its columns
+        int row = 0;
+        for (int cell = 0; cell < masks.cells; cell++) {
+            if (cellColumn[cell] == 0) continue;
+            masks.units(cell, units);
+            masks.candidates(cell, cand, 0);
+            for (int v = CandidateMasks.nextValue(cand, 0, masks.words, 1); v > 0; v = CandidateMasks.nextValue(cand, 0, masks.words, v + 1)) {
+                rowCell[row] = cell;
+                rowDigit[row] = v;
+                int node = firstRowNode + row * width;
+                link(node, cellColumn[cell]);
+                for (int k = 0; k < units.length; k++) link(node + 1 + k, unitDigitColumn[units[k] * g + v - 1]);
+                row++;
+            }
+        }
+
+        this.bucketHead = new int[g + 1];
+        this.bucketNext = new int[columns + 1];
+        this.bucketPrev = new int[columns + 1];
+        Arrays.fill(bucketHead, -1);
+        for (int c = 1; c <= columns; c++) bucketAdd(c);
+    }
+
+    private void link(int node, int column) {
+        C[node] = column;
+        U[node] = U[column];
+        D[node] = column;
+        D[U[column]] = node;
+        U[column] = node;
+        S[column]++;
+    }
+
+    private int right(int node) {
+        return (node - firstRowNode) % width == width - 1 ? node - width + 1 : node + 1;
+    }
+
+    private int left(int node) {
+        return (node - firstRowNode) % width == 0 ? node + width - 1 : node - 1;
+    }
+
+    private void bucketAdd(int c) {
+        int head = bucketHead[S[c]];
+        bucketNext[c] = head;
+        bucketPrev[c] = -1;
+        if (head >= 0) bucketPrev[head] = c;
+        bucketHead[S[c]] = c;
+    }
+
+    private void bucketRemove(int c) {
+        if (bucketPrev[c] >= 0) bucketNext[bucketPrev[c]] = bucketNext[c];
+        else bucketHead[S[c]] = bucketNext[c];
+        if (bucketNext[c] >= 0) bucketPrev[bucketNext[c]] = bucketPrev[c];
+    }
+
+    private void resize(int c, int delta) {
+        bucketRemove(c);
+        S[c] += delta;
+        bucketAdd(c);
+    }
+
+    // Column to branch on: one with no row or a single row left if there is any, the first in header order among
+    // them, so dead ends and forced rows (naked and hidden singles) are taken at once; otherwise the first open cell
+    // in row-major order. Knuth's smallest column all the way down chooses like MRV and thrashes the same way on a
+    // blank 3D board, which filling the cells in order solves with a handful of backtracks
+    // Covering never reorders the headers, so the first in a bucket is its lowest numbered column, and with the cell
+    // columns numbered first, the first open cell is the head of the header list
+    private int chooseColumn() {
+        for (int size = 0; size <= 1; size++) {
+            int first = bucketHead[size];
+            if (first < 0) continue;
+            for (int c = bucketNext[first]; c >= 0; c = bucketNext[c]) first = Math.min(first, c);
+            return first;
+        }
+        return R[0];
+    }
+
+    private void cover(int c) {
+        L[R[c]] = L[c];
+        R[L[c]] = R[c];
+        bucketRemove(c);
+        for (int i = D[c]; i != c; i = D[i]) {
+            for (int j = right(i); j != i; j = right(j)) {
+                U[D[j]] = U[j];
+                D[U[j]] = D[j];
+                resize(C[j], -1);
+                updates++;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = U[c]; i != c; i = U[i]) {
+            for (int j = left(i); j != i; j = left(j)) {
+                resize(C[j], 1);
+                U[D[j]] = j;
+                D[U[j]] = j;
+                updates++;
+            }
+        }
+        bucketAdd(c);
+        L[R[c]] = c;
+        R[L[c]] = c;
+    }
+
+    // Cover the other columns of a chosen row
+    private void coverRow(int r) {
+        for (int j = right(r); j != r; j = right(j)) cover(C[j]);
+    }
+
+    private void uncoverRow(int r) {
+        for (int j = left(r); j != r; j = left(j)) uncover(C[j]);
+    }
+
+    // Iterative Algorithm X, the depth can reach the number of empty cells so recursion is avoided
+    // On success the chosen rows are written onto the sudoku's current board
+    boolean solve() {
+        int[] chosenColumn = new int[masks.cells + 1];
+        int[] chosenRow = new int[masks.cells + 1];
+        int level = 0;
+
+        while (true) {
+            if (R[0] == 0) {
+                for (int i = 0; i < level; i++) {
+                    int row = (chosenRow[i] - firstRowNode) / width;
+                    sudoku.setCell(rowCell[row], rowDigit[row]);
+                }
+                return true;
+            }
+
+            int c = chooseColumn();
+            if (S[c] > 0) {
+                cover(c);
+                chosenColumn[level] = c;
+                chosenRow[level] = D[c];
+                coverRow(D[c]);
+                rowsTried++;
+                level++;
+                continue;
+            }
+
+            // Dead end, move the deepest choice that still has rows left to its next row
+            while (true) {
+                if (level == 0) return false;
+                level--;
+                int r = chosenRow[level];
+                c = chosenColumn[level];
+                uncoverRow(r);
+                r = D[r];
+                if (r != c) {
+                    chosenRow[level] = r;
+                    coverRow(r);
+                    rowsTried++;
+                    level++;
+                    break;
+                }
+                uncover(c);
+            }
+        }
+    }
+}
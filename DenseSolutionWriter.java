@@ -0,0 +1,19 @@
+// SolutionWriter for the dense format, values only, one line per run of the last axis, space separated
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+class DenseSolutionWriter implements SolutionWriter {
+    public void write(NDArray board, int gridSize, WritableByteChannel channel) throws IOException {
+        int[] shape = board.shape();
+        int run = shape[shape.length - 1];
+        ChannelOutput out = new ChannelOutput(channel);
+
+        for (int cell = 0; cell < board.size(); cell++) {
+            out.ensure(12);
+            out.putInt(board.get(cell));
+            out.put((byte)(cell % run == run - 1 ? '\n' : ' '));
+        }
+        out.flush();
+    }
+}
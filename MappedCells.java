@@ -0,0 +1,100 @@
+// Board cells kept in a memory-mapped file instead of a heap array, for NDArray boards too large for the heap
+// Cells are stored at the width NDArray picked (two to a byte, high nibble first, when they fit in 4 bits) in a
+// temporary file mapped in chunks of up to 1 GB, since one MappedByteBuffer only reaches 2 GB. A cell never
+// straddles two chunks, cell widths and the chunk size being powers of two. The file is unlinked once mapped, so
+// nothing is left behind however the process ends; the mappings keep it alive until they are garbage collected,
+// and the OS page cache decides which parts of the board are in memory
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class MappedCells {
+    static final int CHUNK_SHIFT = 30;
+    static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    final Path directory;
+    final int cells;
+    final int width;  // bits per cell: 4, 8, 16 or 32
+    final long bytes; // size of the file
+    private final MappedByteBuffer[] chunks;
+
+    MappedCells(Path directory, int cells, int width) {
+        this.directory = directory;
+        this.cells = cells;
+        this.width = width;
+        this.bytes = width == 4 ? (cells + 1L) / 2 : (long)cells * (width / 8);
+        this.chunks = new MappedByteBuffer[(int)Math.max(1, (bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "ndarray", ".cells");
+            // Mapping past the end grows the file, sparsely, so an empty board reads as zeros without being written
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                for (int c = 0; c < chunks.length; c++) {
+                    long start = (long)c << CHUNK_SHIFT;
+                    chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(1L << CHUNK_SHIFT, bytes - start));
+                    chunks[c].order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map a board of " + cells + " cells in " + directory, e);
+        }
+    }
+
+    int get(int cell) {
+        if (cell < 0 || cell >= cells) throw new ArrayIndexOutOfBoundsException(cell);
+        switch (width) {
+            case 4: {
+                long at = cell >>> 1;
+                int b = chunks[(int)(at >>> CHUNK_SHIFT)].get((int)(at & CHUNK_MASK));
+                return ((cell & 1) == 0 ? b >>> 4 : b) & 0xF;
+            }
+            case 8: return chunks[cell >>> CHUNK_SHIFT].get((int)(cell & CHUNK_MASK)) & 0xFF;
+            case 16: {
+                long at = (long)cell << 1;
+                return chunks[(int)(at >>> CHUNK_SHIFT)].getShort((int)(at & CHUNK_MASK)) & 0xFFFF;
+            }
+            default: {
+                long at = (long)cell << 2;
+                return chunks[(int)(at >>> CHUNK_SHIFT)].getInt((int)(at & CHUNK_MASK));
+            }
+        }
+    }
+
+    // The value must already fit in the width, NDArray checks it
+    void set(int cell, int value) {
+        if (cell < 0 || cell >= cells) throw new ArrayIndexOutOfBoundsException(cell);
+        switch (width) {
+            case 4: {
+                long at = cell >>> 1;
+                MappedByteBuffer chunk = chunks[(int)(at >>> CHUNK_SHIFT)];
+                int index = (int)(at & CHUNK_MASK);
+                int b = chunk.get(index);
+                chunk.put(index, (byte)((cell & 1) == 0 ? b & 0x0F | value << 4 : b & 0xF0 | value));
+                break;
+            }
+            case 8: chunks[cell >>> CHUNK_SHIFT].put((int)(cell & CHUNK_MASK), (byte)value); break;
+            case 16: {
+                long at = (long)cell << 1;
+                chunks[(int)(at >>> CHUNK_SHIFT)].putShort((int)(at & CHUNK_MASK), (short)value);
+                break;
+            }
+            default: {
+                long at = (long)cell << 2;
+                chunks[(int)(at >>> CHUNK_SHIFT)].putInt((int)(at & CHUNK_MASK), value);
+            }
+        }
+    }
+
+    // A new file with the same cells, copied a chunk at a time
+    MappedCells copy() {
+        MappedCells copy = new MappedCells(directory, cells, width);
+        for (int c = 0; c < chunks.length; c++) copy.chunks[c].put(0, chunks[c], 0, chunks[c].limit());
+        return copy;
+    }
+}
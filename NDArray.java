@@ -0,0 +1,220 @@
+// N-dimensional board of cells for nSudoku, indexed by coordinates or by a flat row-major index
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+class NDArray {
+	
+	// Cells are stored as narrow as the largest value allows: 16 nibbles to a long while values fit in 4 bits,
+	// then a byte, a short or an int per cell. Board values never exceed the grid size, so a 9x9 family board
+	// takes an eighth of the memory an int per cell did and a 16 or 25 grid a quarter, and copies and scans
+	// move that much less. Every access goes through get and set, so the width never shows outside this class
+	// Boards of at least -Dndarray.mapCells cells are kept in a MappedCells file under -Dndarray.mapDir (the temp
+	// directory by default) instead, so a board, and every copy of it, can be larger than the heap
+	static final int NIBBLE = 4, BYTE = 8, SHORT = 16, INT = 32, MAPPED = 0;
+	static final long MAP_CELLS = Long.getLong("ndarray.mapCells", Long.MAX_VALUE);
+	static final Path MAP_DIRECTORY = Paths.get(System.getProperty("ndarray.mapDir", System.getProperty("java.io.tmpdir")));
+
+	private final int width;   //bits per cell
+	private final int store;   //which backing store is in use: width for the heap arrays, or MAPPED
+	private final int length;  //number of cells
+	private MappedCells mapped; //the backing store in use, the others stay null
+	private long[] nibbles;
+	private byte[] bytes;
+	private short[] shorts;
+	private int[] array; 	   //our actual array that holds all the data
+	private int[] dimensions;  //how many dimension
+	private int[] multipliers; //how far you move in one direction
+	
+	NDArray(int[] dimensions) {
+        // Initializes the n dimensional array, a sudoku board holds values up to its longest side
+	    this(dimensions, max(dimensions));
+	}
+
+	NDArray(int[] dimensions, int maxValue) {
+        // Initializes the n dimensional array for values 0 to maxValue
+	    long arraySize = 1;
+
+	    multipliers = new int[dimensions.length];
+	    for (int idx = dimensions.length - 1; idx >= 0; idx--) {
+	      multipliers[idx] = (int)arraySize;
+	      arraySize *= dimensions[idx];
+	      if (arraySize > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many cells to index: " + Arrays.toString(dimensions));
+	    }
+	    this.dimensions = dimensions;
+	    this.width = widthFor(maxValue);
+	    this.length = (int)arraySize;
+	    this.store = arraySize >= MAP_CELLS ? MAPPED : width;
+	    switch (store) {
+	        case MAPPED: mapped = new MappedCells(MAP_DIRECTORY, length, width); break;
+	        case NIBBLE: nibbles = new long[(length + 15) >>> 4]; break;
+	        case BYTE: bytes = new byte[length]; break;
+	        case SHORT: shorts = new short[length]; break;
+	        default: array = new int[length];
+	    }
+	  }
+
+	private NDArray(NDArray other) {
+	    this.width = other.width;
+	    this.store = other.store;
+	    this.length = other.length;
+	    this.dimensions = other.dimensions.clone();
+	    this.multipliers = other.multipliers.clone();
+	}
+
+	static int widthFor(int maxValue) {
+	    if (maxValue < 0) throw new IllegalArgumentException("Negative maximum value " + maxValue);
+	    return maxValue < 1 << 4 ? NIBBLE : maxValue < 1 << 8 ? BYTE : maxValue < 1 << 16 ? SHORT : INT;
+	}
+
+	private static int max(int[] dimensions) {
+	    int max = 0;
+	    for (int d : dimensions) max = Math.max(max, d);
+	    return max;
+	}
+	
+	public int size() {
+	    return length;
+	}
+	
+	public int[] shape() {
+	    return dimensions.clone();
+	}
+
+	// Bits per cell of the backing store
+	int width() {
+	    return width;
+	}
+
+	// Whether the cells are in a mapped file rather than on the heap
+	boolean isMapped() {
+	    return store == MAPPED;
+	}
+
+	// Bytes held by the backing store
+	long storageBytes() {
+	    if (store == MAPPED) return mapped.bytes;
+	    return width == NIBBLE ? nibbles.length * 8L : (long)length * (width / 8);
+	}
+	
+	public int get(int[] indices) {
+        // Get a particular value in the array
+		if (indices.length != dimensions.length) {
+            System.out.print(indices.length + " " + dimensions.length);
+	        throw new IllegalArgumentException("Incorrect number of indices");
+	    }
+		
+	    int internalIndex = 0;
+
+	    for (int idx = 0; idx < indices.length; idx++) {
+	      internalIndex += indices[idx] * multipliers[idx];
+	    }
+	    return get(internalIndex);
+	}
+	
+	public void set(int[] indices, int value) {
+        // Set a particular value in the array
+		if (indices.length != dimensions.length) {
+	        throw new IllegalArgumentException("Incorrect number of indices");
+	    }
+		
+	    int internalIndex = 0;
+
+	    for (int idx = 0; idx < indices.length; idx++) {
+	        internalIndex += indices[idx] * multipliers[idx];
+	    }
+	    set(internalIndex, value);
+	}
+	
+	// Value at a flat (row-major) index, for callers that already work in flat cell numbers
+	public int get(int flatIndex) {
+	    switch (store) {
+	        case NIBBLE:
+	            if (flatIndex >= length) throw new ArrayIndexOutOfBoundsException(flatIndex);
+	            return (int)(nibbles[flatIndex >>> 4] >>> ((flatIndex & 15) << 2)) & 0xF;
+	        case BYTE: return bytes[flatIndex] & 0xFF;
+	        case SHORT: return shorts[flatIndex] & 0xFFFF;
+	        case MAPPED: return mapped.get(flatIndex);
+	        default: return array[flatIndex];
+	    }
+	}
+
+	public void set(int flatIndex, int value) {
+	    if (width != INT && value >>> width != 0) {
+	        throw new IllegalArgumentException("Value " + value + " does not fit in " + width + " bits");
+	    }
+	    switch (store) {
+	        case NIBBLE:
+	            if (flatIndex >= length) throw new ArrayIndexOutOfBoundsException(flatIndex);
+	            int shift = (flatIndex & 15) << 2;
+	            int word = flatIndex >>> 4;
+	            nibbles[word] = nibbles[word] & ~(0xFL << shift) | (long)value << shift;
+	            break;
+	        case BYTE: bytes[flatIndex] = (byte)value; break;
+	        case SHORT: shorts[flatIndex] = (short)value; break;
+	        case MAPPED: mapped.set(flatIndex, value); break;
+	        default: array[flatIndex] = value;
+	    }
+	}
+
+	// First cell at or after from that holds a value, size() if there is none
+	// The nibble store tests 16 cells per word, so scanning the clues of a sparse board skips its empty stretches
+	int nextFilled(int from) {
+	    if (store == NIBBLE) {
+	        if (from >= length) return length;
+	        int word = from >>> 4;
+	        long bits = nibbles[word] & (-1L << ((from & 15) << 2));
+	        while (bits == 0) {
+	            if (++word == nibbles.length) return length;
+	            bits = nibbles[word];
+	        }
+	        return (word << 4) + (Long.numberOfTrailingZeros(bits) >>> 2); // cells past the end are never set
+	    }
+	    for (int cell = from; cell < length; cell++) {
+	        if (get(cell) != 0) return cell;
+	    }
+	    return length;
+	}
+
+	public NDArray clone_copy() {
+        // Duplicates the n dimensional array, in the same width and the same kind of store
+        NDArray newNDArray = new NDArray(this);
+
+        if (mapped != null) newNDArray.mapped = this.mapped.copy();
+        if (nibbles != null) newNDArray.nibbles = this.nibbles.clone();
+        if (bytes != null) newNDArray.bytes = this.bytes.clone();
+        if (shorts != null) newNDArray.shorts = this.shorts.clone();
+        if (array != null) newNDArray.array = this.array.clone();
+
+        return newNDArray;
+    }
+	
+	
+	@Override
+	public String toString() {
+		
+		StringBuilder strResult = new StringBuilder();
+		
+		int[] indices = new int[dimensions.length];
+		int value;
+		int flatIndex;
+		
+		for (int i = 0; i < length; i++) {
+		    value = get(i);
+		    
+		    flatIndex = i;
+		    for (int idx = 0; idx < dimensions.length; idx++) {
+		        indices[idx] = flatIndex / multipliers[idx];
+		        flatIndex %= multipliers[idx];
+		    }
+
+		    strResult.append(Arrays.toString(indices))
+            		 .append(" = ")
+            		 .append(value)
+            		 .append("\n");
+		}
+
+		return strResult.toString();
+	}
+}
@@ -0,0 +1,134 @@
+// Fork-join parallel DLS for nSudoku
+// The top splitDepth levels of the search tree are expanded into independent subproblems, each with its
+// own copy of the board, and every subproblem below that runs the sequential DLS. The pool's work stealing
+// balances the uneven subtrees, and the first solution found (or the limit-th when counting) sets a flag every
+// other task polls to stop early
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+class ParallelSolver {
+    final nSudoku sudoku;
+    final int threads;
+    final int splitDepth;
+
+    final AtomicBoolean found = new AtomicBoolean();
+    final AtomicReference<NDArray> solution = new AtomicReference<>();
+    final AtomicLong solutions = new AtomicLong();
+    final LongAdder nodes = new LongAdder();
+    long maxSolutions = 1; // solutions wanted before every task stops
+    final AtomicInteger tasks = new AtomicInteger();
+
+    ParallelSolver(nSudoku sudoku, int threads, int splitDepth) {
+        this.sudoku = sudoku;
+        this.threads = threads;
+        this.splitDepth = splitDepth;
+    }
+
+    // Solve from the sudoku's current board, returning the solved board or null
+    NDArray solve() {
+        return solve(sudoku.curr_board);
+    }
+
+    private NDArray solve(NDArray board) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SplitTask(board.clone_copy(), 0));
+        } finally {
+            pool.shutdown();
+        }
+        return solution.get();
+    }
+
+    // Count the solutions of the sudoku's clues, up to limit, whatever an earlier solve left on its current board
+    long countSolutions(long limit) {
+        this.maxSolutions = limit;
+        solve(sudoku.org_board);
+        return Math.min(solutions.get(), limit);
+    }
+
+    // Record full boards found by one task, flagging every task to stop once enough have been found
+    private void record(long count, NDArray board) {
+        if (count == 0) return;
+        if (solutions.addAndGet(count) >= maxSolutions && found.compareAndSet(false, true)) solution.set(board);
+    }
+
+    // Solve the same board sequentially and in parallel and print the speedup
+    void reportSpeedup() {
+        nSudoku sequential = subSolver(sudoku.curr_board.clone_copy());
+        long start = System.nanoTime();
+        boolean solved = sequential.DLS(sequential.curr_board.size());
+        long sequentialTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        boolean parallelSolved = solve() != null;
+        long parallelTime = System.nanoTime() - start;
+
+        System.out.printf("Sequential DLS: %.1f ms (%s), parallel DLS on %d threads: %.1f ms (%s), speedup %.2fx%n",
+                sequentialTime / 1e6, solved ? "solved" : "no solution",
+                threads, parallelTime / 1e6, parallelSolved ? "solved" : "no solution",
+                (double)sequentialTime / parallelTime);
+    }
+
+    // Quiet solver for one subproblem with the same ordering and propagation settings as the original
+    private nSudoku subSolver(NDArray board) {
+        nSudoku sub = sudoku.copyWith(board);
+        sub.verbose = false;
+        sub.metrics = sudoku.metrics;
+        return sub;
+    }
+
+    @SuppressWarnings("serial") // tasks are never serialized, RecursiveAction just is Serializable
+    private class SplitTask extends RecursiveAction {
+        final NDArray board;
+        final int depth;
+
+        SplitTask(NDArray board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get()) return;
+            tasks.incrementAndGet();
+            nSudoku sub = subSolver(board);
+
+            // Deep enough, search this subtree sequentially
+            if (depth >= splitDepth) {
+                sub.stopFlag = found;
+                long count = sub.search(sub.curr_board.size(), maxSolutions);
+                nodes.add(sub.nodes);
+                record(count, sub.curr_board);
+                return;
+            }
+
+            // Otherwise branch on the next cell and fork one task per candidate
+            if (!sub.prepare()) return;
+            int cell = sub.ordering.select();
+            if (cell < 0) {
+                record(1, sub.curr_board);
+                return;
+            }
+            long[] candidates = new long[sub.masks.words];
+            sub.masks.candidates(cell, candidates, 0);
+
+            ArrayList<SplitTask> children = new ArrayList<SplitTask>();
+            int mark = sub.trailSize;
+            for (int v = CandidateMasks.nextValue(candidates, 0, candidates.length, 1); v > 0; v = CandidateMasks.nextValue(candidates, 0, candidates.length, v + 1)) {
+                sub.assign(cell, v);
+                children.add(new SplitTask(sub.curr_board.clone_copy(), depth + 1));
+                sub.undoTo(mark);
+            }
+            nodes.add(children.size());
+            sudoku.metrics.nodes.add(children.size());
+            invokeAll(children);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+// Constructive fill for empty and near-empty nSudoku boards, so they are solved in one pass over the cells instead of a search
+// With n = subGridSize a prime power, digits are taken as points of the plane GF(n)^2 and a cell gets
+//   sigma(h_0(x_0) + h_1(x_1) + ... + h_{d-1}(x_{d-1}))
+// where each axis k has its own direction A_k, h_k sends the n bands of the axis to the n distinct lines parallel to
+// A_k and the n rows of a band to the n points of its line, and sigma relabels the n^2 points as digits. Each h_k is
+// then one-to-one, so every axis line holds every digit, and as long as no two directions are parallel the rows of two
+// bands add up to every point once, so every axis-pair subgrid does too. The plane has n + 1 directions, which limits
+// the pattern to boards of at most subGridSize + 1 dimensions: 4D of size 9, 5D of size 16, 6D of size 25
+// Clues are fitted by a small backtracking search over the values of h_k at the coordinates they use and the points of
+// their digits, within a work limit. Which band goes to which line, the order of the rows in a band and the digit
+// labels are all free, so sparse clue sets usually fit; when they do not, or the work limit runs out, the board is
+// left as it was for the DLS
+// The fill only looks for some solution, so it is used by solveDLS and solveWithin, never to count solutions
+
+import java.util.Arrays;
+
+class PatternFill {
+    static final long MAX_WORK = 1L << 20; // values tried while fitting the clues at most
+
+    final int dim;
+    final int size;
+    final int n;
+    private final int[] add; // GF(n) addition and multiplication tables, a * n + b
+    private final int[] mul;
+    private final int[] addPoint; // point addition in GF(n)^2, p * size + q, point (u, w) being u * n + w
+    private final int[][] line; // line[k][p]: which of the n lines parallel to A_k point p lies on
+
+    // The fit: h[k][x] is the point coordinate x of axis k goes to, or -1
+    private final int[][] h;
+    private final int[][] bandLine;   // line of axis k each band went to, or -1
+    private final int[][] lineBand;   // band of axis k each line went to, or -1
+    private final boolean[][] taken;  // points h[k] already uses
+    private final int[] digitPoint;   // point of each digit, or -1
+    private final int[] pointDigit;   // digit of each point, or 0
+
+    private int[][] clueCoords;
+    private int[] clueValues;
+    private long work;
+
+    private PatternFill(int dim, int size, int n, int[] add, int[] mul) {
+        this.dim = dim;
+        this.size = size;
+        this.n = n;
+        this.add = add;
+        this.mul = mul;
+        this.addPoint = new int[size * size];
+        for (int p = 0; p < size; p++) {
+            for (int q = 0; q < size; q++) addPoint[p * size + q] = add[p / n * n + q / n] * n + add[p % n * n + q % n];
+        }
+        // A_k = (1, k) for the first n axes, (0, 1) for the last; (u, w) lies on line w - k * u of (1, k), line u of (0, 1)
+        this.line = new int[dim][size];
+        int minusOne = minusOne(add, n);
+        for (int k = 0; k < dim; k++) {
+            for (int p = 0; p < size; p++) {
+                int u = p / n, w = p % n;
+                line[k][p] = k == n ? u : add[w * n + mul[minusOne * n + mul[k * n + u]]];
+            }
+        }
+        this.h = new int[dim][size];
+        this.bandLine = new int[dim][n];
+        this.lineBand = new int[dim][n];
+        this.taken = new boolean[dim][size];
+        for (int k = 0; k < dim; k++) {
+            Arrays.fill(h[k], -1);
+            Arrays.fill(bandLine[k], -1);
+            Arrays.fill(lineBand[k], -1);
+        }
+        this.digitPoint = new int[size + 1];
+        Arrays.fill(digitPoint, -1);
+        this.pointDigit = new int[size];
+    }
+
+    // Fill every empty cell of the solver's current board from the pattern, on the trail like a search would,
+    // and return true; false, with the board untouched, if the board is not one the pattern can fit
+    static boolean fill(nSudoku sudoku, int maxClues) {
+        int dim = sudoku.dimensions;
+        int size = sudoku.gridSize;
+        int n = sudoku.subGridSize;
+        if (n * n != size || dim > n + 1) return false;
+        int[][] field = field(n);
+        if (field == null) return false;
+
+        NDArray board = sudoku.curr_board;
+        int clues = 0;
+        for (int cell = board.nextFilled(0); cell < board.size(); cell = board.nextFilled(cell + 1)) {
+            if (++clues > maxClues) return false;
+        }
+        PatternFill pattern = new PatternFill(dim, size, n, field[0], field[1]);
+        pattern.clueCoords = new int[clues][dim];
+        pattern.clueValues = new int[clues];
+        for (int cell = board.nextFilled(0), i = 0; cell < board.size(); cell = board.nextFilled(cell + 1), i++) {
+            for (int a = dim - 1, rest = cell; a >= 0; a--, rest /= size) pattern.clueCoords[i][a] = rest % size;
+            pattern.clueValues[i] = board.get(cell);
+        }
+        if (!pattern.fit(0, 0)) return false;
+        pattern.complete();
+        // Every clue was fitted, so this cannot fail, but a wrong board must never be handed back as a solution
+        for (int i = 0; i < clues; i++) {
+            if (pattern.digitAt(pattern.clueCoords[i]) != pattern.clueValues[i]) return false;
+        }
+        pattern.write(sudoku);
+        return true;
+    }
+
+    // Addition and multiplication tables of GF(n), or null if n is not a prime power
+    // Elements are polynomials over GF(p) written in base p; the field is the first monic polynomial of degree e whose
+    // products have no zero divisors, found by trying them all, which is cheap for the grid sizes a board can have
+    static int[][] field(int n) {
+        int p = 2;
+        while (n % p != 0) p++;
+        int e = 0;
+        for (int m = n; m > 1; m /= p, e++) {
+            if (m % p != 0) return null;
+        }
+        int[] add = new int[n * n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                int sum = 0;
+                for (int i = 0, scale = 1, x = a, y = b; i < e; i++, scale *= p, x /= p, y /= p) sum += (x % p + y % p) % p * scale;
+                add[a * n + b] = sum;
+            }
+        }
+        // Low coefficients of x^e in each candidate modulus, as an element; the modulus is x^e - low
+        for (int low = 0; low < n; low++) {
+            int[] mul = new int[n * n];
+            boolean isField = true;
+            for (int a = 0; a < n && isField; a++) {
+                for (int b = 0; b < n; b++) {
+                    int product = multiply(a, b, low, p, e, n, add);
+                    if (a != 0 && b != 0 && product == 0) {
+                        isField = false;
+                        break;
+                    }
+                    mul[a * n + b] = product;
+                }
+            }
+            if (isField) return new int[][] {add, mul};
+        }
+        return null;
+    }
+
+    // a * b modulo x^e - low, by shift and add: a is multiplied by x once per digit of b, highest first
+    private static int multiply(int a, int b, int low, int p, int e, int n, int[] add) {
+        int top = n / p; // value of x^(e - 1)
+        int[] digitsOfB = new int[e];
+        for (int i = 0, y = b; i < e; i++, y /= p) digitsOfB[i] = y % p;
+        int result = 0;
+        for (int i = e - 1; i >= 0; i--) {
+            result = timesX(result, low, p, top, n, add);
+            for (int c = 0; c < digitsOfB[i]; c++) result = add[result * n + a];
+        }
+        return result;
+    }
+
+    // v * x: shift the digits up one place, and fold the x^e that falls off back in as low
+    private static int timesX(int v, int low, int p, int top, int n, int[] add) {
+        int carry = v / top;
+        int shifted = v % top * p;
+        for (int c = 0; c < carry; c++) shifted = add[shifted * n + low];
+        return shifted;
+    }
+
+    // -1 in GF(n), the element that adds to 1 to give 0
+    private static int minusOne(int[] add, int n) {
+        for (int v = 0; v < n; v++) {
+            if (add[v * n + 1] == 0) return v;
+        }
+        throw new IllegalStateException("No additive inverse of 1");
+    }
+
+    // Fit clue i from axis k on, then the clues after it; false once every choice failed or the work limit ran out
+    private boolean fit(int i, int k) {
+        if (i == clueValues.length) return true;
+        int[] x = clueCoords[i];
+        if (k == dim) {
+            int sum = 0;
+            for (int a = 0; a < dim; a++) sum = addPoint[sum * size + h[a][x[a]]];
+            int digit = clueValues[i];
+            if (digitPoint[digit] >= 0) return digitPoint[digit] == sum && fit(i + 1, 0);
+            if (pointDigit[sum] != 0) return false;
+            digitPoint[digit] = sum;
+            pointDigit[sum] = digit;
+            if (fit(i + 1, 0)) return true;
+            digitPoint[digit] = -1;
+            pointDigit[sum] = 0;
+            return false;
+        }
+        if (h[k][x[k]] >= 0) return fit(i, k + 1);
+
+        // The last free axis of a clue whose digit already has a point has only one value that works
+        int forced = -1;
+        if (digitPoint[clueValues[i]] >= 0) {
+            boolean last = true;
+            for (int a = k + 1; a < dim && last; a++) last = h[a][x[a]] >= 0;
+            if (last) {
+                int rest = 0;
+                for (int a = 0; a < dim; a++) {
+                    if (a != k) rest = addPoint[rest * size + h[a][x[a]]];
+                }
+                forced = difference(digitPoint[clueValues[i]], rest);
+            }
+        }
+        int band = x[k] / n;
+        for (int p = forced >= 0 ? forced : 0; p < size; p++) {
+            if (++work > MAX_WORK) return false;
+            int l = line[k][p];
+            boolean fits = !taken[k][p] && (bandLine[k][band] >= 0 ? bandLine[k][band] == l : lineBand[k][l] < 0);
+            if (fits) {
+                boolean newLine = bandLine[k][band] < 0;
+                h[k][x[k]] = p;
+                taken[k][p] = true;
+                if (newLine) {
+                    bandLine[k][band] = l;
+                    lineBand[k][l] = band;
+                }
+                if (fit(i, k + 1)) return true;
+                h[k][x[k]] = -1;
+                taken[k][p] = false;
+                if (newLine) {
+                    bandLine[k][band] = -1;
+                    lineBand[k][l] = -1;
+                }
+                if (work > MAX_WORK) return false;
+            }
+            if (forced >= 0) break;
+        }
+        return false;
+    }
+
+    // The point q with q + b = a
+    private int difference(int a, int b) {
+        for (int q = 0; q < size; q++) {
+            if (addPoint[q * size + b] == a) return q;
+        }
+        throw new IllegalStateException("No difference of points " + a + " and " + b);
+    }
+
+    // Give the bands, rows and digits no clue touched the lines, points and labels left over
+    private void complete() {
+        for (int k = 0; k < dim; k++) {
+            for (int band = 0; band < n; band++) {
+                if (bandLine[k][band] < 0) {
+                    int l = 0;
+                    while (lineBand[k][l] >= 0) l++;
+                    bandLine[k][band] = l;
+                    lineBand[k][l] = band;
+                }
+                int p = 0;
+                for (int x = band * n; x < band * n + n; x++) {
+                    if (h[k][x] >= 0) continue;
+                    while (taken[k][p] || line[k][p] != bandLine[k][band]) p++;
+                    h[k][x] = p;
+                    taken[k][p] = true;
+                }
+            }
+        }
+        int digit = 1;
+        for (int p = 0; p < size; p++) {
+            if (pointDigit[p] != 0) continue;
+            while (digitPoint[digit] >= 0) digit++;
+            digitPoint[digit] = p;
+            pointDigit[p] = digit;
+        }
+    }
+
+    private int digitAt(int[] x) {
+        int sum = 0;
+        for (int k = 0; k < dim; k++) sum = addPoint[sum * size + h[k][x[k]]];
+        return pointDigit[sum];
+    }
+
+    // Fill the empty cells in row-major order, keeping partial sums of the leading axes so each cell costs one addition
+    private void write(nSudoku sudoku) {
+        NDArray board = sudoku.curr_board;
+        int[] x = new int[dim];
+        int[] partial = new int[dim]; // sum of h over axes 0..k at the current coordinates
+        for (int k = 0; k < dim; k++) partial[k] = addPoint[(k == 0 ? 0 : partial[k - 1]) * size + h[k][0]];
+        for (int cell = 0; cell < board.size(); cell++) {
+            if (board.get(cell) == 0) {
+                sudoku.setCell(cell, pointDigit[partial[dim - 1]]);
+                sudoku.trail[sudoku.trailSize++] = cell;
+            }
+            int a = dim - 1;
+            while (a > 0 && ++x[a] == size) x[a--] = 0;
+            if (a == 0 && ++x[0] == size) break;
+            for (int k = a; k < dim; k++) partial[k] = addPoint[(k == 0 ? 0 : partial[k - 1]) * size + h[k][x[k]]];
+        }
+    }
+}
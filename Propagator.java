@@ -0,0 +1,172 @@
+// Constraint propagation stage for the nSudoku DLS
+// After every assignment it fills in the cells that are forced, until nothing changes:
+//   naked singles  - an empty cell with a single candidate left
+//   hidden singles - a digit with a single place left in an axis line or axis-pair subgrid
+// Every cell it fills goes through nSudoku.assign, so it sits on the trail and is undone with the frame that caused it
+
+class Propagator {
+    final nSudoku sudoku;
+    final CandidateMasks masks;
+    final int words;
+    final boolean nakedSingles;
+    final boolean hiddenSingles;
+
+    long nakedCount;  // cells filled as naked singles
+    long hiddenCount; // cells filled as hidden singles
+
+    // Worklist of units to scan for hidden singles, as (cell, unit kind) pairs, each unit queued at most once
+    private final int[] queueCell;
+    private final int[] queueKind;
+    private final boolean[] queued;
+    private int head;
+    private int queueSize;
+
+    private final int[] peers;
+    private final int[] unitIds;
+    private final int[] unitCells;
+    private final long[] cand;
+    private final long[] once;
+    private final long[] twice;
+    private final long[] usedMask;
+
+    Propagator(nSudoku sudoku, boolean nakedSingles, boolean hiddenSingles) {
+        this.sudoku = sudoku;
+        this.masks = sudoku.masks;
+        this.words = masks.words;
+        this.nakedSingles = nakedSingles;
+        this.hiddenSingles = hiddenSingles;
+
+        int units = masks.unitsPerCell * masks.unitsPerKind;
+        this.queueCell = new int[units];
+        this.queueKind = new int[units];
+        this.queued = new boolean[units];
+
+        this.peers = new int[masks.peerCount];
+        this.unitIds = new int[masks.unitsPerCell];
+        this.unitCells = new int[masks.gridSize];
+        this.cand = new long[words];
+        this.once = new long[words];
+        this.twice = new long[words];
+        this.usedMask = new long[words];
+    }
+
+    // Propagate from the whole current board, used once before the search starts
+    boolean propagateAll() {
+        int start = sudoku.trailSize;
+        for (int cell = 0; cell < masks.cells; cell++) {
+            if (sudoku.cellValue(cell) != 0) continue;
+            if (!checkCell(cell)) return fail();
+            if (hiddenSingles) enqueueUnitsOf(cell);
+        }
+        return propagate(start);
+    }
+
+    // Propagate the consequences of every trail entry from a given position; false on a contradiction
+    boolean propagate(int scan) {
+        while (true) {
+            if (scan < sudoku.trailSize) {
+                if (!afterAssign(sudoku.trail[scan++])) return fail();
+            }
+            else if (queueSize > 0) {
+                int cell = queueCell[head];
+                int kind = queueKind[head];
+                head = (head + 1) % queueCell.length;
+                queueSize--;
+                if (!scanUnit(cell, kind)) return fail();
+            }
+            else return true;
+        }
+    }
+
+    // Look at the empty peers of a freshly filled cell: any left without candidates is a contradiction
+    private boolean afterAssign(int cell) {
+        int n = masks.peers(cell, peers);
+        for (int i = 0; i < n; i++) {
+            int peer = peers[i];
+            if (sudoku.cellValue(peer) != 0) continue;
+            if (!checkCell(peer)) return false;
+            if (hiddenSingles) enqueueUnitsOf(peer);
+        }
+        if (hiddenSingles) enqueueUnitsOf(cell);
+        return true;
+    }
+
+    // Fail an empty cell with no candidates, fill it if it is a naked single
+    private boolean checkCell(int cell) {
+        masks.candidates(cell, cand, 0);
+        int count = CandidateMasks.count(cand, 0, words);
+        if (count == 0) return false;
+        if (count == 1 && nakedSingles) {
+            sudoku.assign(cell, CandidateMasks.nextValue(cand, 0, words, 1));
+            nakedCount++;
+        }
+        return true;
+    }
+
+    private void enqueueUnitsOf(int cell) {
+        masks.units(cell, unitIds);
+        for (int k = 0; k < masks.unitsPerCell; k++) {
+            int unit = unitIds[k];
+            if (queued[unit]) continue;
+            queued[unit] = true;
+            int at = (head + queueSize) % queueCell.length;
+            queueCell[at] = cell;
+            queueKind[at] = k;
+            queueSize++;
+        }
+    }
+
+    // Find the digits of a unit with no place left (contradiction) or exactly one place (hidden single)
+    private boolean scanUnit(int cell, int kind) {
+        masks.units(cell, unitIds);
+        int unit = unitIds[kind];
+        queued[unit] = false;
+
+        masks.unitCells(cell, kind, unitCells);
+        for (int w = 0; w < words; w++) {
+            once[w] = 0;
+            twice[w] = 0;
+        }
+        for (int member : unitCells) {
+            if (sudoku.cellValue(member) != 0) continue;
+            masks.candidates(member, cand, 0);
+            for (int w = 0; w < words; w++) {
+                twice[w] |= once[w] & cand[w];
+                once[w] |= cand[w];
+            }
+        }
+
+        masks.usedIn(unit, usedMask, 0);
+        for (int w = 0; w < words; w++) {
+            if ((masks.fullMask[w] & ~usedMask[w] & ~once[w]) != 0) return false;
+            once[w] &= ~twice[w];
+        }
+
+        for (int value = CandidateMasks.nextValue(once, 0, words, 1); value > 0; value = CandidateMasks.nextValue(once, 0, words, value + 1)) {
+            int target = -1;
+            for (int member : unitCells) {
+                if (sudoku.cellValue(member) == 0 && masks.isCandidate(member, value)) {
+                    target = member;
+                    break;
+                }
+            }
+            // An earlier hidden single in this unit took the only place
+            if (target < 0) return false;
+            sudoku.assign(target, value);
+            hiddenCount++;
+        }
+        return true;
+    }
+
+    // Drop the worklist after a contradiction, the caller undoes the trail
+    private boolean fail() {
+        while (queueSize > 0) {
+            masks.units(queueCell[head], unitIds);
+            queued[unitIds[queueKind[head]]] = false;
+            head = (head + 1) % queueCell.length;
+            queueSize--;
+        }
+        head = 0;
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+// Loads puzzle files into an NDArray without going through Scanner and String.split
+// The file is memory-mapped and its bytes parsed in place, so no String is made per line or per number.
+// Two formats are read, told apart by the first four bytes:
+//   text   - the "coord coord ... value" lines of the sudokuInput files, one clue per line
+//   binary - the NSDK header (magic, version, dimensions, grid size, bits per cell) followed by every cell
+//            in flat order, two cells per byte (high nibble first) when a value fits in 4 bits, else a byte each
+// Convert a text file once with saveBinary and repeated runs skip the parsing altogether
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+class PuzzleLoader {
+    static final int MAGIC = 0x4E53444B; // "NSDK"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 9;   // magic, version, dimensions, grid size (2 bytes), bits per cell
+
+    // Load a puzzle of the given shape, validating every clue against it
+    static NDArray load(String fileName, int dim, int size) throws IOException {
+        if (dim < 1 || size < 1 || size > 255) throw new IllegalArgumentException("Unsupported board shape " + dim + "D of size " + size);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) throw new IllegalArgumentException("Puzzle file too large to map: " + fileName);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return parse(buffer, dim, size);
+        }
+    }
+
+    // Same for a puzzle already in memory, in either format
+    static NDArray parse(ByteBuffer buffer, int dim, int size) {
+        if (dim < 1 || size < 1 || size > 255) throw new IllegalArgumentException("Unsupported board shape " + dim + "D of size " + size);
+        NDArray board = new NDArray(shape(dim, size));
+        if (buffer.limit() >= 4 && buffer.getInt(0) == MAGIC) readBinary(buffer, board, dim, size);
+        else readText(buffer, board, dim, size);
+        return board;
+    }
+
+    static int[] shape(int dim, int size) {
+        int[] shape = new int[dim];
+        for (int i = 0; i < dim; i++) shape[i] = size;
+        return shape;
+    }
+
+    private static void readText(ByteBuffer buffer, NDArray board, int dim, int size) {
+        int[] fields = new int[dim + 1];
+        int[] index = new int[dim];
+        int count = 0;   // fields read on the current line
+        int value = 0;
+        boolean inNumber = false;
+        int line = 1;
+
+        int end = buffer.limit();
+        for (int at = 0; at <= end; at++) {
+            byte b = at < end ? buffer.get(at) : (byte)'\n'; // treat the end of the file as one last line break
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (value > size) throw new IllegalArgumentException("Line " + line + ": number out of range for a grid of size " + size);
+                inNumber = true;
+                continue;
+            }
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                throw new IllegalArgumentException("Line " + line + ": unexpected character '" + (char)b + "'");
+            }
+            if (inNumber) {
+                if (count == fields.length) throw new IllegalArgumentException("Line " + line + ": expected " + fields.length + " numbers");
+                fields[count++] = value;
+                value = 0;
+                inNumber = false;
+            }
+            if (b != '\n') continue;
+
+            // End of a line, blank lines are skipped
+            if (count > 0) {
+                if (count != fields.length) throw new IllegalArgumentException("Line " + line + ": expected " + fields.length + " numbers");
+                for (int i = 0; i < dim; i++) {
+                    if (fields[i] >= size) throw new IllegalArgumentException("Line " + line + ": coordinate " + fields[i] + " out of range");
+                    index[i] = fields[i];
+                }
+                board.set(index, fields[dim]);
+                count = 0;
+            }
+            line++;
+        }
+    }
+
+    private static void readBinary(ByteBuffer buffer, NDArray board, int dim, int size) {
+        if (buffer.limit() < HEADER_BYTES) throw new IllegalArgumentException("Truncated puzzle header");
+        int version = buffer.get(4) & 0xFF;
+        int fileDim = buffer.get(5) & 0xFF;
+        int fileSize = buffer.getShort(6) & 0xFFFF;
+        int bits = buffer.get(8) & 0xFF;
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported puzzle format version " + version);
+        if (fileDim != dim || fileSize != size) {
+            throw new IllegalArgumentException("Puzzle is " + fileDim + "D of size " + fileSize + ", expected " + dim + "D of size " + size);
+        }
+        if (bits != bitsPerCell(size)) throw new IllegalArgumentException("Bad cell width " + bits + " for size " + size);
+
+        int cells = board.size();
+        long needed = HEADER_BYTES + packedBytes(cells, bits);
+        if (buffer.limit() < needed) throw new IllegalArgumentException("Truncated puzzle, expected " + needed + " bytes");
+
+        for (int cell = 0; cell < cells; cell++) {
+            int value;
+            if (bits == 4) {
+                int b = buffer.get(HEADER_BYTES + (cell >>> 1)) & 0xFF;
+                value = (cell & 1) == 0 ? b >>> 4 : b & 0xF;
+            }
+            else value = buffer.get(HEADER_BYTES + cell) & 0xFF;
+            if (value > size) throw new IllegalArgumentException("Cell " + cell + ": value " + value + " out of range");
+            if (value != 0) board.set(cell, value);
+        }
+    }
+
+    // A nibble per cell while every value fits in 4 bits, a byte otherwise
+    static int bitsPerCell(int size) {
+        return size <= 15 ? 4 : 8;
+    }
+
+    static long packedBytes(long cells, int bits) {
+        return bits == 4 ? (cells + 1) / 2 : cells;
+    }
+
+    // Header of the binary format for a board of the given shape
+    static ByteBuffer header(int dim, int size) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).put((byte)VERSION).put((byte)dim).putShort((short)size).put((byte)bitsPerCell(size));
+        header.flip();
+        return header;
+    }
+
+    // Write a board in the binary format, e.g. to convert a text clue file for repeated runs
+    static void saveBinary(NDArray board, int size, String fileName) throws IOException {
+        new BinarySolutionWriter().write(board, size, fileName);
+    }
+}
@@ -0,0 +1,155 @@
+// Size-bounded cache of solved puzzles keyed by CanonicalForm, so a puzzle that is an earlier one up to the board's
+// symmetries is answered by mapping the stored solution back through the inverse transform instead of searching
+// Solutions are stored in canonical coordinates and digits. The memory tier is an LRU map bounded by the cells it
+// holds, so it can keep many 9x9 boards or a few 4D ones. The optional disk tier is a directory with a file per
+// entry, named by the form's hash and written through on put, which survives restarts and is read on a memory
+// miss. A file repeats the whole canonical clue list, so two forms with the same hash never share a solution
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+class ResultCache {
+    static final int MAGIC = 0x4E534343; // "NSCC", followed by dim, size, clue count, clues and the NSDK board
+
+    final long maxCells;
+    final Path directory; // null for memory only
+
+    private final LinkedHashMap<CanonicalForm, NDArray> entries = new LinkedHashMap<CanonicalForm, NDArray>(16, 0.75f, true);
+    private long cells; // held by entries
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder diskHits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder diskErrors = new LongAdder(); // disk reads or writes that failed and were treated as misses
+
+    ResultCache(long maxCells, Path directory) throws IOException {
+        if (maxCells < 1) throw new IllegalArgumentException("Cache needs room for at least one cell");
+        this.maxCells = maxCells;
+        this.directory = directory;
+        if (directory != null) Files.createDirectories(directory);
+    }
+
+    ResultCache(long maxCells) throws IOException {
+        this(maxCells, null);
+    }
+
+    // Solution of the puzzle the form was made from, in that puzzle's coordinates and digits, or null
+    NDArray get(CanonicalForm form) {
+        NDArray canonical;
+        synchronized (this) {
+            canonical = entries.get(form);
+        }
+        if (canonical != null) hits.increment();
+        else if (directory != null && (canonical = read(form)) != null && BoardValidator.isSolved(canonical, form.dimensions, form.gridSize)) {
+            diskHits.increment();
+            remember(form, canonical);
+        }
+        else {
+            misses.increment();
+            return null;
+        }
+        return form.toOriginal(canonical);
+    }
+
+    // Store the solution of the puzzle the form was made from
+    void put(CanonicalForm form, NDArray solution) {
+        NDArray canonical = form.toCanonical(solution);
+        remember(form, canonical);
+        if (directory != null) write(form, canonical);
+    }
+
+    private synchronized void remember(CanonicalForm form, NDArray canonical) {
+        if (canonical.size() > maxCells) return;
+        NDArray old = entries.put(form, canonical);
+        if (old != null) cells -= old.size();
+        cells += canonical.size();
+        Iterator<NDArray> eldest = entries.values().iterator();
+        while (cells > maxCells) {
+            cells -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private Path file(CanonicalForm form) {
+        return directory.resolve(String.format("%016x.nsc", form.hash));
+    }
+
+    // Write to a temporary file and move it into place, so a reader never sees half an entry
+    private void write(CanonicalForm form, NDArray canonical) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeByte(form.dimensions);
+            out.writeShort(form.gridSize);
+            out.writeInt(form.clues.length);
+            for (long clue : form.clues) out.writeLong(clue);
+            out.flush();
+            new BinarySolutionWriter().write(canonical, form.gridSize, Channels.newChannel(bytes));
+
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, file(form), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            diskErrors.increment();
+        }
+    }
+
+    private NDArray read(CanonicalForm form) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file(form)));
+            if (in.getInt() != MAGIC || in.get() != form.dimensions || in.getShort() != form.gridSize) return null;
+            if (in.getInt() != form.clues.length) return null;
+            for (long clue : form.clues) {
+                if (in.getLong() != clue) return null;
+            }
+            return PuzzleLoader.parse(in.slice(), form.dimensions, form.gridSize);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            diskErrors.increment(); // unreadable or truncated entry, solve again
+            return null;
+        }
+    }
+
+    // Drop the memory tier and zero the counters, the disk tier stays
+    synchronized void clear() {
+        entries.clear();
+        cells = 0;
+        hits.reset();
+        diskHits.reset();
+        misses.reset();
+        evictions.reset();
+        diskErrors.reset();
+    }
+
+    // Share of lookups answered from either tier
+    double hitRate() {
+        long found = hits.sum() + diskHits.sum();
+        long lookups = found + misses.sum();
+        return lookups == 0 ? 0 : (double)found / lookups;
+    }
+
+    synchronized int entries() {
+        return entries.size();
+    }
+
+    String toJson() {
+        return "{\"hits\": " + hits.sum() + ", \"diskHits\": " + diskHits.sum() + ", \"misses\": " + misses.sum()
+                + ", \"hitRate\": " + String.format(Locale.ROOT, "%.3f", hitRate()) + ", \"entries\": " + entries()
+                + ", \"evictions\": " + evictions.sum() + ", \"diskErrors\": " + diskErrors.sum() + "}";
+    }
+}
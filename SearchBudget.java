@@ -0,0 +1,53 @@
+// Limits on how long one nSudoku search may run
+// A budget is a wall-clock timeout, a cap on the candidate assignments tried, or both, plus a cancellation token
+// another thread can trip. The search only looks at them when it polls, every 16 nodes and as soon as the node
+// cap is reached, so a bounded search runs as fast as an unbounded one and stops within 16 nodes of a limit
+
+import java.util.concurrent.TimeUnit;
+
+class SearchBudget {
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    final long timeoutNanos;  // from the start of the solve, UNLIMITED for no deadline
+    final long maxNodes;      // UNLIMITED for no cap
+    final CancellationToken token;
+
+    SearchBudget(long timeout, TimeUnit unit, long maxNodes, CancellationToken token) {
+        if (timeout <= 0 || maxNodes <= 0) throw new IllegalArgumentException("Search budget must be positive");
+        if (token == null) throw new IllegalArgumentException("Search budget needs a cancellation token");
+        this.timeoutNanos = timeout == UNLIMITED ? UNLIMITED : unit.toNanos(timeout);
+        this.maxNodes = maxNodes;
+        this.token = token;
+    }
+
+    // No limit but cancellation
+    static SearchBudget unlimited() {
+        return new SearchBudget(UNLIMITED, TimeUnit.NANOSECONDS, UNLIMITED, new CancellationToken());
+    }
+
+    static SearchBudget timeout(long timeout, TimeUnit unit) {
+        return new SearchBudget(timeout, unit, UNLIMITED, new CancellationToken());
+    }
+
+    static SearchBudget nodes(long maxNodes) {
+        return new SearchBudget(UNLIMITED, TimeUnit.NANOSECONDS, maxNodes, new CancellationToken());
+    }
+
+    // Deadline on the System.nanoTime() clock for a solve starting at startNanos
+    long deadline(long startNanos) {
+        return timeoutNanos == UNLIMITED || startNanos + timeoutNanos < startNanos ? UNLIMITED : startNanos + timeoutNanos;
+    }
+}
+
+// Set once from any thread to stop every search polling it, can be shared by several budgets
+class CancellationToken {
+    private volatile boolean cancelled;
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+}
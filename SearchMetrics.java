@@ -0,0 +1,165 @@
+// Counters for a DLS run, readable from other threads while the search is going
+// The searcher keeps plain counters in its hot loop and adds them in here every 1024 nodes (it polls its stop flag
+// every 16), so the cost per node is unchanged. The totals are LongAdders, so the solvers of a parallel search can
+// share one SearchMetrics without contending on a single counter
+// A background reporter prints a line per interval, toJson() gives the end-of-run numbers, and
+// registerMBean() exposes the same numbers over JMX. Together they tell a stuck search (nodes flat, depth
+// flat) apart from a slow one (nodes climbing, depth moving)
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class SearchMetrics implements SearchMetricsMBean {
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    final LongAdder nodes = new LongAdder();         // candidate assignments tried
+    final LongAdder backtracks = new LongAdder();    // frames popped once all their candidates were tried
+    final LongAdder nakedSingles = new LongAdder();
+    final LongAdder hiddenSingles = new LongAdder();
+    final LongAdder solutions = new LongAdder();
+    final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    volatile int depth;                              // search stack depth at the last update
+    private volatile AtomicLongArray depthHistogram = new AtomicLongArray(0); // nodes tried at each depth
+
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private ObjectName mbeanName;
+
+    // Reset and start the clock
+    void start(int maxSearchDepth) {
+        nodes.reset();
+        backtracks.reset();
+        nakedSingles.reset();
+        hiddenSingles.reset();
+        solutions.reset();
+        maxDepth.reset();
+        depth = 0;
+        depthHistogram = new AtomicLongArray(maxSearchDepth + 1);
+        endNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    // Add a range of a searcher's per-depth node counts, clearing them there
+    void addDepthCounts(long[] counts, int from, int to) {
+        AtomicLongArray histogram = depthHistogram;
+        for (int d = from; d <= to && d < histogram.length(); d++) {
+            if (counts[d] == 0) continue;
+            histogram.addAndGet(d, counts[d]);
+            counts[d] = 0;
+        }
+    }
+
+    public long getNodes() { return nodes.sum(); }
+    public long getBacktracks() { return backtracks.sum(); }
+    public long getNakedSingles() { return nakedSingles.sum(); }
+    public long getHiddenSingles() { return hiddenSingles.sum(); }
+    public long getSolutions() { return solutions.sum(); }
+    public int getDepth() { return depth; }
+    public int getMaxDepth() { return (int) maxDepth.get(); }
+
+    public long getElapsedMillis() {
+        if (startNanos == 0) return 0;
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    public double getNodesPerSecond() {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : getNodes() * 1000.0 / millis;
+    }
+
+    public long[] getDepthHistogram() {
+        AtomicLongArray histogram = depthHistogram;
+        int last = histogram.length() - 1;
+        while (last >= 0 && histogram.get(last) == 0) last--;
+        long[] counts = new long[last + 1];
+        for (int d = 0; d <= last; d++) counts[d] = histogram.get(d);
+        return counts;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"elapsedMillis\": ").append(getElapsedMillis())
+            .append(", \"nodes\": ").append(getNodes())
+            .append(", \"nodesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getNodesPerSecond()))
+            .append(", \"backtracks\": ").append(getBacktracks())
+            .append(", \"nakedSingles\": ").append(getNakedSingles())
+            .append(", \"hiddenSingles\": ").append(getHiddenSingles())
+            .append(", \"solutions\": ").append(getSolutions())
+            .append(", \"depth\": ").append(getDepth())
+            .append(", \"maxDepth\": ").append(getMaxDepth())
+            .append(", \"depthHistogram\": [");
+        long[] histogram = getDepthHistogram();
+        for (int d = 0; d < histogram.length; d++) {
+            if (d > 0) json.append(", ");
+            json.append(histogram[d]);
+        }
+        return json.append("]}").toString();
+    }
+
+    public void writeJson(String fileName) throws IOException {
+        Files.write(Paths.get(fileName), toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Print a progress line every interval on a daemon thread, until the returned executor is shut down
+    ScheduledExecutorService startReporter(long intervalMillis, PrintStream out) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastNodes = new long[1];
+        long[] lastNanos = {System.nanoTime()};
+        reporter.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            long total = getNodes();
+            double rate = (total - lastNodes[0]) * 1e9 / Math.max(1, now - lastNanos[0]);
+            lastNodes[0] = total;
+            lastNanos[0] = now;
+            out.printf("[%.1fs] nodes %d (%.0f/s), backtracks %d, singles %d naked %d hidden, depth %d (max %d)%n",
+                    getElapsedMillis() / 1000.0, total, rate, getBacktracks(), getNakedSingles(), getHiddenSingles(),
+                    getDepth(), getMaxDepth());
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return reporter;
+    }
+
+    // Expose these metrics on the platform MBean server as nSudoku:type=SearchMetrics,id=<n>
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            mbeanName = new ObjectName("nSudoku:type=SearchMetrics,id=" + instances.incrementAndGet());
+            server.registerMBean(this, mbeanName);
+        } catch (JMException e) {
+            mbeanName = null; // JMX is optional, the search runs the same without it
+        }
+    }
+
+    void unregisterMBean() {
+        if (mbeanName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            // already gone
+        }
+        mbeanName = null;
+    }
+}
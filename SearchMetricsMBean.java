@@ -0,0 +1,14 @@
+// JMX view of a running search, see SearchMetrics
+public interface SearchMetricsMBean {
+    long getNodes();
+    long getBacktracks();
+    long getNakedSingles();
+    long getHiddenSingles();
+    long getSolutions();
+    int getDepth();
+    int getMaxDepth();
+    long getElapsedMillis();
+    double getNodesPerSecond();
+    long[] getDepthHistogram();
+    String toJson();
+}
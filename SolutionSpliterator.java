@@ -0,0 +1,69 @@
+// Lazy source of nSudoku solutions for Iterator and Stream consumers
+// Wraps a solver whose search has begun: every tryAdvance resumes the frame-stack search up to its next full
+// board, so nothing is enumerated ahead of the consumer. trySplit hands half of the untried candidates of the
+// shallowest frame that has any to spare to a new solver, seeded with the board as it was at that frame
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+class SolutionSpliterator implements Spliterator<NDArray> {
+    private final nSudoku search;
+
+    private SolutionSpliterator(nSudoku search) {
+        this.search = search;
+    }
+
+    // Spliterator over every solution of the sudoku's clues, searched on a quiet copy of them, so an earlier solve
+    // of the sudoku does not narrow it down to the solution it found
+    static SolutionSpliterator of(nSudoku sudoku) {
+        nSudoku search = sudoku.copyWith(sudoku.org_board.clone_copy());
+        search.verbose = false;
+        search.begin(search.curr_board.size());
+        return new SolutionSpliterator(search);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super NDArray> action) {
+        if (!search.advance()) return false;
+        action.accept(search.curr_board.clone_copy());
+        return true;
+    }
+
+    @Override
+    public Spliterator<NDArray> trySplit() {
+        int words = search.masks.words;
+        long[] rest = new long[words];
+        for (int f = 0; f < search.depth; f++) {
+            // Candidates of frame f not tried yet, the one being explored now stays here
+            int from = search.frameNext[f];
+            int count = 0;
+            for (int v = CandidateMasks.nextValue(search.frameMask, f * words, words, from); v > 0; v = CandidateMasks.nextValue(search.frameMask, f * words, words, v + 1)) count++;
+            if (count < 2) continue;
+
+            // Move the upper half of them to the new solver
+            Arrays.fill(rest, 0);
+            int seen = 0;
+            for (int v = CandidateMasks.nextValue(search.frameMask, f * words, words, from); v > 0; v = CandidateMasks.nextValue(search.frameMask, f * words, words, v + 1)) {
+                if (seen++ < count / 2) continue;
+                rest[(v - 1) >>> 6] |= 1L << (v - 1);
+                search.frameMask[f * words + ((v - 1) >>> 6)] &= ~(1L << (v - 1));
+            }
+
+            nSudoku other = search.copyWith(search.boardAt(search.frameMark[f]));
+            other.begin(search.frameCapacity - f, search.frameCell[f], rest);
+            return new SolutionSpliterator(other);
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE; // unknown until the search is done
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,33 @@
+// Output formats for solved boards
+// Every writer walks the board cell by cell into a fixed buffer that is drained to an NIO channel whenever it
+// fills up, so memory stays the same however large the board is, unlike building NDArray.toString() first
+//   text   - "[i, j, ...] = v" per cell, the format solveDLS has always written
+//   dense  - values only, one line per run of the last axis, space separated
+//   binary - PuzzleLoader's NSDK header and packed cells, which PuzzleLoader reads back as a puzzle
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+interface SolutionWriter {
+    void write(NDArray board, int gridSize, WritableByteChannel channel) throws IOException;
+
+    // Write to a file, replacing it if it exists
+    default void write(NDArray board, int gridSize, String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(board, gridSize, channel);
+        }
+    }
+
+    static SolutionWriter of(String name) {
+        switch (name.toLowerCase()) {
+            case "text": return new TextSolutionWriter();
+            case "dense": return new DenseSolutionWriter();
+            case "binary": return new BinarySolutionWriter();
+            default: throw new IllegalArgumentException("Unknown solution format: " + name);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// What a bounded nSudoku solve ended with, and the search statistics up to that point
+// The statistics are filled in whatever the status, so a search that timed out still shows how far it got
+
+class SolveResult {
+    enum Status {
+        SOLVED,        // solution holds the filled board
+        UNSATISFIABLE, // the whole search tree was tried without finding one
+        TIMED_OUT,     // the budget's deadline passed or its node cap was reached first
+        CANCELLED      // the token was cancelled, the thread interrupted or the future cancelled first
+    }
+
+    final Status status;
+    final NDArray solution; // null unless SOLVED
+    final long nodes;
+    final long backtracks;
+    final long nakedSingles;
+    final long hiddenSingles;
+    final int peakDepth;
+    final long elapsedNanos;
+
+    SolveResult(Status status, NDArray solution, long nodes, long backtracks, long nakedSingles, long hiddenSingles,
+                int peakDepth, long elapsedNanos) {
+        this.status = status;
+        this.solution = solution;
+        this.nodes = nodes;
+        this.backtracks = backtracks;
+        this.nakedSingles = nakedSingles;
+        this.hiddenSingles = hiddenSingles;
+        this.peakDepth = peakDepth;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s after %.1f ms: %d nodes, %d backtracks, %d naked singles, %d hidden singles, peak depth %d",
+                status, elapsedNanos / 1e6, nodes, backtracks, nakedSingles, hiddenSingles, peakDepth);
+    }
+}
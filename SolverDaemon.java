@@ -0,0 +1,333 @@
+// Long-running local solver, so puzzles are solved by JIT-warmed code instead of paying for a JVM launch each
+// Listens on the loopback interface only. POST a puzzle to /solve in the triplet format of the sudokuInput files
+// ("coord ... coord value" per clue) with its shape as dim and size query parameters, 2D of size 9 if left out:
+//
+//   curl --data-binary @sudokuInput/hard3D.txt 'http://localhost:8089/solve?dim=3&size=9&timeoutMs=2000'
+//
+// The reply is the SolveResult line, then the solution in the format query parameter (text, dense or binary,
+// dense by default) if there is one. Bad input gets a 400 with the parser's message. GET /stats returns counters
+//
+// Solved puzzles go into a ResultCache under their CanonicalForm, so a puzzle that is an earlier one relabeled,
+// transposed or with bands swapped is answered without searching; cache=false in the query skips it
+//
+// Every request is handled on its own virtual thread, and solving holds one of `threads` permits, so however many
+// requests arrive only that many puzzles use CPU at once. Classic 9x9 puzzles go to a batcher: whenever a permit is
+// free it takes every 9x9 puzzle waiting (up to MAX_BATCH) and solves them in one go on a warmed Sudoku9Engine, so
+// under load the per-puzzle hand-offs are paid once per batch. Engines are warmed up before the port opens
+//
+// Usage: java SolverDaemon [port] [threads] [cache directory]
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SolverDaemon {
+    static final int DEFAULT_PORT = 8089;
+    static final int MAX_BATCH = 64;                    // 9x9 puzzles solved per permit at most
+    static final long DEFAULT_TIMEOUT_MILLIS = 10_000;  // N-D solve budget unless timeoutMs says otherwise
+    static final int MAX_CELLS = 1 << 24;               // largest board accepted
+    static final int WARMUP_SOLVES = 300;               // 9x9 requests per engine before the port opens, ~2 ms each solved
+    static final long DEFAULT_CACHE_CELLS = 1 << 22;    // cells of solutions kept in memory, 16 MB
+
+    // A hard 9x9 puzzle for warming up, row by row
+    private static final String WARMUP_PUZZLE = "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+
+    static {
+        // The server writes headers and body separately, which Nagle's algorithm would hold back a delayed-ACK period
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    final int threads;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore cpu;                          // puzzles being solved at once
+    private final BlockingQueue<Sudoku9Engine> engines;   // one per permit, so a permit holder always finds one
+    private final BlockingQueue<Pending> waiting = new LinkedBlockingQueue<Pending>();
+    final ResultCache cache; // null for none
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder batched = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    // A 9x9 puzzle waiting for the batcher
+    private static final class Pending {
+        final int[][] grid;
+        final CompletableFuture<int[][]> solution = new CompletableFuture<int[][]>(); // null grid for no solution
+
+        Pending(int[][] grid) {
+            this.grid = grid;
+        }
+    }
+
+    public SolverDaemon(int port, int threads) throws IOException {
+        this(port, threads, new ResultCache(DEFAULT_CACHE_CELLS));
+    }
+
+    public SolverDaemon(int port, int threads, ResultCache cache) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one solver thread");
+        this.threads = threads;
+        this.cache = cache;
+        this.cpu = new Semaphore(threads);
+        this.engines = new ArrayBlockingQueue<Sudoku9Engine>(threads);
+        for (int i = 0; i < threads; i++) engines.add(new Sudoku9Engine());
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ResultCache cache = new ResultCache(DEFAULT_CACHE_CELLS, args.length > 2 ? Paths.get(args[2]) : null);
+        SolverDaemon daemon = new SolverDaemon(port, threads, cache);
+        long start = System.nanoTime();
+        daemon.start();
+        System.out.printf("Warmed up in %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+        System.out.println("Solver daemon listening on " + daemon.port() + " with " + threads + " solver threads");
+    }
+
+    // Warm up, then open the port
+    public void start() throws InterruptedException, IOException {
+        handlers.execute(this::batchLoop);
+        warmUp();
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Run requests through everything but the socket until the JIT has compiled the hot paths:
+    // parsing, validation, the batcher and every 9x9 engine, the N-D search and the writers
+    void warmUp() throws IOException, InterruptedException {
+        StringBuilder clues = new StringBuilder();
+        for (int cell = 0; cell < Sudoku9Engine.CELLS; cell++) {
+            char c = WARMUP_PUZZLE.charAt(cell);
+            if (c != '0') clues.append(cell / Sudoku.SIZE).append(' ').append(cell % Sudoku.SIZE).append(' ').append(c).append('\n');
+        }
+        byte[] puzzle = clues.toString().getBytes(StandardCharsets.US_ASCII);
+        Map<String, String> params = new HashMap<String, String>();
+        for (int i = 0; i < WARMUP_SOLVES * threads; i++) {
+            params.put("cache", i % 2 == 0 ? "false" : "true"); // every other one a cache hit, to warm that path too
+            answer(params, puzzle);
+        }
+
+        params.put("dim", "3");
+        params.put("format", "text");
+        answer(params, "0 0 0 1\n1 1 1 2\n".getBytes(StandardCharsets.US_ASCII));
+        // Every warm-up answer has come back, so the batcher is idle; /stats should only count real requests
+        batches.reset();
+        batched.reset();
+        if (cache != null) cache.clear();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "POST a puzzle to /solve\n");
+                return;
+            }
+            byte[] body = answer(query(exchange.getRequestURI().getRawQuery()), exchange.getRequestBody().readAllBytes());
+            reply(exchange, 200, body);
+        } catch (IllegalArgumentException e) {
+            rejected.increment();
+            reply(exchange, 400, e.getMessage() + "\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply(exchange, 503, "Shutting down\n");
+        } catch (RuntimeException e) {
+            // A bug in one request must still get an answer, not a closed connection
+            reply(exchange, 500, "Internal error: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Solve one request, returning the reply body
+    byte[] answer(Map<String, String> params, byte[] puzzle) throws IOException, InterruptedException {
+        int dim = intParam(params, "dim", 2);
+        int size = intParam(params, "size", Sudoku.SIZE);
+        long timeout = intParam(params, "timeoutMs", (int)DEFAULT_TIMEOUT_MILLIS);
+        SolutionWriter writer = SolutionWriter.of(params.getOrDefault("format", "dense"));
+        // Checked for every board alike, though only the N-D search needs a budget; a 9x9 solve takes microseconds
+        if (timeout < 1) throw new IllegalArgumentException("timeoutMs " + timeout + " is not positive");
+        if (dim < 1) throw new IllegalArgumentException("Dimension " + dim + " is below 1");
+        if (size < 1) throw new IllegalArgumentException("Size " + size + " is below 1");
+        if (Math.pow(size, dim) > MAX_CELLS) {
+            throw new IllegalArgumentException("Board of " + dim + "D and size " + size + " is over the " + MAX_CELLS + " cell limit");
+        }
+        int sub = (int)Math.round(Math.sqrt(size));
+        if (sub * sub != size) throw new IllegalArgumentException("Size " + size + " is not a perfect square, subgrids are square");
+        NDArray board = PuzzleLoader.parse(ByteBuffer.wrap(puzzle), dim, size);
+        boolean cached = cache != null && !"false".equals(params.get("cache"));
+
+        long start = System.nanoTime();
+        SolveResult result;
+        CanonicalForm form = null;
+        NDArray known = null;
+        if (!BoardValidator.isConsistent(board, dim, size)) {
+            result = new SolveResult(SolveResult.Status.UNSATISFIABLE, null, 0, 0, 0, 0, 0, 0);
+        }
+        else if (cached && (known = cache.get(form = CanonicalForm.of(board, dim, size))) != null) {
+            result = new SolveResult(SolveResult.Status.SOLVED, known, 0, 0, 0, 0, 0, System.nanoTime() - start);
+        }
+        else {
+            result = dim == 2 && size == Sudoku.SIZE ? solve9x9(board) : solve(board, dim, size, timeout);
+            if (form != null && result.isSolved()) cache.put(form, result.solution);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write((result + "\n").getBytes(StandardCharsets.US_ASCII));
+        if (result.solution != null) writer.write(result.solution, size, Channels.newChannel(body));
+        return body.toByteArray();
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            long batchCount = batches.sum();
+            String json = String.format(Locale.ROOT, "{\"requests\":%d,\"rejected\":%d,\"batches\":%d,\"batched\":%d,\"meanBatch\":%.2f,\"threads\":%d,\"busy\":%d,\"cache\":%s}%n",
+                    requests.sum(), rejected.sum(), batchCount, batched.sum(),
+                    batchCount == 0 ? 0.0 : (double)batched.sum() / batchCount, threads, threads - cpu.availablePermits(),
+                    cache == null ? "null" : cache.toJson());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            reply(exchange, 200, json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // N-D puzzles are solved on the request's own thread, once it holds a permit
+    private SolveResult solve(NDArray board, int dim, int size, long timeoutMillis) throws InterruptedException {
+        cpu.acquire();
+        try {
+            nSudoku sudoku = new nSudoku(dim, size, board);
+            sudoku.verbose = false;
+            return sudoku.solveWithin(SearchBudget.timeout(timeoutMillis, TimeUnit.MILLISECONDS));
+        } finally {
+            cpu.release();
+        }
+    }
+
+    // 9x9 puzzles wait for the batcher
+    private SolveResult solve9x9(NDArray board) throws InterruptedException {
+        long start = System.nanoTime();
+        int[][] grid = new int[Sudoku.SIZE][Sudoku.SIZE];
+        for (int cell = 0; cell < Sudoku9Engine.CELLS; cell++) grid[cell / Sudoku.SIZE][cell % Sudoku.SIZE] = board.get(cell);
+        Pending pending = new Pending(grid);
+        waiting.put(pending);
+
+        int[][] solution;
+        try {
+            solution = pending.solution.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        if (solution == null) return new SolveResult(SolveResult.Status.UNSATISFIABLE, null, 0, 0, 0, 0, 0, System.nanoTime() - start);
+
+        NDArray solved = new NDArray(PuzzleLoader.shape(2, Sudoku.SIZE));
+        for (int cell = 0; cell < Sudoku9Engine.CELLS; cell++) solved.set(cell, solution[cell / Sudoku.SIZE][cell % Sudoku.SIZE]);
+        return new SolveResult(SolveResult.Status.SOLVED, solved, 0, 0, 0, 0, 0, System.nanoTime() - start);
+    }
+
+    // Take the next 9x9 puzzle, wait for a permit, then add every other puzzle that arrived meanwhile to the batch
+    private void batchLoop() {
+        try {
+            while (true) {
+                ArrayList<Pending> batch = new ArrayList<Pending>();
+                batch.add(waiting.take());
+                cpu.acquire();
+                waiting.drainTo(batch, MAX_BATCH - 1);
+                Sudoku9Engine engine = engines.poll();
+                batches.increment();
+                batched.add(batch.size());
+                handlers.execute(() -> solveBatch(batch, engine));
+            }
+        } catch (InterruptedException e) {
+            // stopping
+        }
+    }
+
+    private void solveBatch(ArrayList<Pending> batch, Sudoku9Engine engine) {
+        try {
+            for (Pending pending : batch) {
+                try {
+                    boolean solved = engine.load(pending.grid) && engine.solve(Sudoku9Engine.CELLS);
+                    pending.solution.complete(solved ? engine.toGrid() : null);
+                } catch (RuntimeException e) {
+                    pending.solution.completeExceptionally(e);
+                }
+            }
+        } finally {
+            engines.add(engine);
+            cpu.release();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        reply(exchange, status, body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void reply(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        HashMap<String, String> params = new HashMap<String, String>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+}
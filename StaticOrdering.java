@@ -0,0 +1,31 @@
+// Row-major CellOrdering, the order DLS has always used
+
+class StaticOrdering implements CellOrdering {
+    boolean[] filled;
+    int cursor; // every cell before the cursor is filled
+
+    public void init(nSudoku sudoku) {
+        int cells = sudoku.masks.cells;
+        this.filled = new boolean[cells];
+        for (int cell = 0; cell < cells; cell++) filled[cell] = sudoku.cellValue(cell) != 0;
+        this.cursor = 0;
+    }
+
+    public int select() {
+        while (cursor < filled.length && filled[cursor]) cursor++;
+        return cursor < filled.length ? cursor : -1;
+    }
+
+    public void assigned(int cell) {
+        filled[cell] = true;
+    }
+
+    public void unassigned(int cell) {
+        filled[cell] = false;
+        if (cell < cursor) cursor = cell;
+    }
+
+    public CellOrdering copy() {
+        return new StaticOrdering();
+    }
+}
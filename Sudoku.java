@@ -6,9 +6,10 @@
 // Additional code learned from: https://github.com/jderrickguarin/sudoku-uninformed-search/blob/master/main/DFS_Sudoku.py
 
 import java.util.*;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Sudoku {
 	public static final int SIZE = 9;
@@ -19,28 +20,33 @@ public class Sudoku {
 	public Sudoku(String fileName) {
     	this.createSudoku(fileName);
     }
+
+	// Puzzle already in memory, 0 for an empty cell
+	public Sudoku(int[][] board) {
+		if (board.length != SIZE) throw new IllegalArgumentException("Board must have " + SIZE + " rows");
+		for (int row = 0; row < SIZE; row++) {
+			if (board[row].length != SIZE) throw new IllegalArgumentException("Board must have " + SIZE + " columns");
+			for (int col = 0; col < SIZE; col++) {
+				if (board[row][col] < 0 || board[row][col] > SIZE) throw new IllegalArgumentException("Bad value " + board[row][col] + " at " + row + " " + col);
+				org_sudoku[row][col] = board[row][col];
+			}
+		}
+	}
 	
 	public void createSudoku(String fileName) {
-
-        ArrayList<int[]> puzzleVals = new ArrayList<int[]>();
+        // Clues are read by the same loader as nSudoku, as a 2D board of size 9
+        NDArray board;
         try{
-            File puzzle = new File(fileName);
-            Scanner fileScanner = new Scanner(puzzle);
-            while(fileScanner.hasNextLine()){
-
-                String line = fileScanner.nextLine();
-                String[] vals = line.split(" ");
-                int[] index = new int[3];
-                for(int i = 0; i < 3; i++) index[i] = Integer.parseInt(vals[i]);
-                puzzleVals.add(index);
-            }
+            board = PuzzleLoader.load(fileName, 2, SIZE);
         }
-        catch (FileNotFoundException error){
+        catch (IOException error){
             System.out.println("Bad File Path");
+            return;
         }
 
-        for(int[] val : puzzleVals){
-            org_sudoku[val[0]][val[1]] = val[2];
+        int[] index = new int[2];
+        for (index[0] = 0; index[0] < SIZE; index[0]++) {
+            for (index[1] = 0; index[1] < SIZE; index[1]++) org_sudoku[index[0]][index[1]] = board.get(index);
         }
 	}
 
@@ -55,36 +61,9 @@ public class Sudoku {
         return null;
     }
 	
+	// Full board with every digit once per row, column and box, see BoardValidator
 	public boolean checkLegal(int[][] state) {
-        int total = 45;
-
-        for (int row = 0; row < SIZE; row++) {
-            int rowSum = 0;
-            int colSum = 0;
-            for (int col = 0; col < SIZE; col++) {
-                rowSum += state[row][col];
-                colSum += state[col][row];
-            }
-            if (rowSum != total || colSum != total) {
-                return false;
-            }
-        }
-
-        // Check quadrants (3x3 blocks)
-        for (int rowStart = 0; rowStart < SIZE; rowStart += SUBGRIDSIZE) {
-            for (int colStart = 0; colStart < SIZE; colStart += SUBGRIDSIZE) {
-                int blockSum = 0;
-                for (int r = 0; r < SUBGRIDSIZE; r++) {
-                    for (int c = 0; c < SUBGRIDSIZE; c++) {
-                        blockSum += state[rowStart + r][colStart + c];
-                    }
-                }
-                if (blockSum != total) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return BoardValidator.isSolved(state);
     }
 
 	
@@ -216,19 +195,25 @@ class SudokuTreeNode {
 	
 }
 
+// Breadth first search over the board one cell per level
+// Each frontier board is packed as a 4-bit nibble per cell into WORDS longs, levels are expanded in parallel
+// chunks, and if a level would grow past maxFrontierBytes the remaining boards are finished depth first instead
 class sudokuBFSSearch {
-    BFSNode root;
     Sudoku puzzle;
     int[][] originalBoard;
-    int[][] currBoard;
     static int size = Sudoku.SIZE;
     static int subSize = Sudoku.SUBGRIDSIZE;
+    static final int CELLS = size * size;
+    static final int WORDS = (CELLS * 4 + 63) / 64; // longs per packed board
+
+    long maxFrontierBytes = 0;        // cap on the packed frontier, 0 for no cap
+    boolean parallel = true;          // expand each level across cores
+    static final int CHUNK = 1024;    // boards per parallel expansion task
+    boolean fellBackToDFS;            // the last search hit the frontier cap
 
     public sudokuBFSSearch(Sudoku sudoku) {
-        this.root = new BFSNode();
         this.puzzle = sudoku;
         this.originalBoard = sudoku.org_sudoku;
-        this.currBoard = new int[size][size];
         /*
         // test board with multiple solutions (128)
         originalBoard = new int[][]{
@@ -242,76 +227,142 @@ class sudokuBFSSearch {
                 {4, 0, 0, 0, 0, 0, 0, 6, 0},
                 {3, 0, 0, 8, 0, 0, 0, 4, 0}};
          */
-
-        for(int i = 0; i < size; i++){
-            for(int j = 0; j < size; j++){
-                currBoard[i][j] = originalBoard[i][j];
-            }
-        }
     }
 
     public ArrayList<int[][]> BFSearch() {
         // variable setup
+        long[] frontier = new long[WORDS];
+        for (int cell = 0; cell < CELLS; cell++) with(frontier, 0, cell, originalBoard[cell / size][cell % size]);
+        int count = 1;
+        fellBackToDFS = false;
+        long maxBoards = maxFrontierBytes > 0 ? Math.max(1, maxFrontierBytes / (WORDS * Long.BYTES)) : Long.MAX_VALUE;
+
+        // iteration by tree level, one level per empty cell
+        for (int cell = 0; cell < CELLS && count > 0; cell++) {
+            if (originalBoard[cell / size][cell % size] != 0) continue;
+
+            long[][] next = expandLevel(frontier, count, cell, maxBoards);
+            if (next == null) {
+                // the next level would go over the cap, finish every board of the current level depth first instead
+                fellBackToDFS = true;
+                return finishDepthFirst(frontier, count, cell);
+            }
+            int nextCount = 0;
+            for (long[] part : next) nextCount += part.length / WORDS;
+            frontier = concat(next, nextCount);
+            count = nextCount;
+        }
+
+        // return solution board for every leaf
         ArrayList<int[][]> solutions = new ArrayList<int[][]>();
-        ArrayList<BFSNode> currChildren = new ArrayList<BFSNode>();
-        ArrayList<Integer> nextChildren;
-        int[] currIndex = {0, 0}; // current index within the sudoku board
-        int currSize; // number of nodes in each level
-
-        nextChildren = getPossValues(originalBoard, currIndex);
-        for(int val : nextChildren) currChildren.add(root.addNewChild(val, currIndex.clone()));
-
-        // iteration by tree level
-        for(int level = 0; level < 80; level++){
-            currSize = currChildren.size();
-            // index for nodes in the next level
-            currIndex[0] = Math.floorDiv(level + 1, size);
-            currIndex[1] = (level + 1) % size;
-
-            // iterate through each node in the level and set their children
-            for(int i = 0; i < currSize; i++){
-                BFSNode currNode = currChildren.getFirst();
-                setCurrBoard(currNode);
-                nextChildren = getPossValues(currBoard, currIndex);
-                for(int val : nextChildren) currChildren.add(currNode.addNewChild(val, new int[]{currIndex[0], currIndex[1]}));
-                currChildren.removeFirst();
+        for (int i = 0; i < count; i++) solutions.add(unpack(frontier, i * WORDS));
+        return solutions;
+    }
+
+    // Expand every board of a level at the given cell, in parallel chunks when the level is large
+    // Returns null, without allocating past the cap, as soon as the level would have more than maxBoards boards:
+    // every chunk reserves room for a board's children on a shared count before writing them
+    private long[][] expandLevel(long[] frontier, int count, int cell, long maxBoards) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        int maxWords = (int)Math.min(Integer.MAX_VALUE - 8, Math.min(maxBoards, Integer.MAX_VALUE) * WORDS); // one chunk never holds more
+        AtomicLong emitted = new AtomicLong();
+        IntStream range = IntStream.range(0, chunks);
+        if (parallel && chunks > 1) range = range.parallel();
+        long[][] parts = range.mapToObj(chunk -> {
+            int end = Math.min(count, (chunk + 1) * CHUNK);
+            long[] out = new long[Math.min((end - chunk * CHUNK) * WORDS * 2, maxWords)];
+            int outCount = 0;
+            for (int i = chunk * CHUNK; i < end; i++) {
+                int options = possValues(frontier, i * WORDS, cell);
+                if (emitted.addAndGet(Integer.bitCount(options)) > maxBoards) return null;
+                for (int m = options; m != 0; m &= m - 1) {
+                    if ((outCount + 1) * WORDS > out.length) out = Arrays.copyOf(out, Math.min(out.length * 2, maxWords));
+                    System.arraycopy(frontier, i * WORDS, out, outCount * WORDS, WORDS);
+                    with(out, outCount * WORDS, cell, Integer.numberOfTrailingZeros(m) + 1);
+                    outCount++;
+                }
             }
-            if(currChildren.isEmpty()) break; // board has no solution
+            return Arrays.copyOf(out, outCount * WORDS);
+        }).toArray(long[][]::new);
+        for (long[] part : parts) {
+            if (part == null) return null;
         }
+        return parts;
+    }
+
+    // Complete every board of the frontier by depth first search from the given cell
+    private ArrayList<int[][]> finishDepthFirst(long[] frontier, int count, int cell) {
+        IntStream range = IntStream.range(0, count);
+        if (parallel) range = range.parallel();
+        List<ArrayList<int[][]>> parts = range.mapToObj(i -> {
+            ArrayList<int[][]> found = new ArrayList<int[][]>();
+            long[] board = Arrays.copyOfRange(frontier, i * WORDS, (i + 1) * WORDS);
+            depthFirst(board, cell, found);
+            return found;
+        }).collect(Collectors.toList());
 
-        // return solution board for every level 80 node
-        for(BFSNode child : currChildren) solutions.add(setCurrBoard(child));
+        ArrayList<int[][]> solutions = new ArrayList<int[][]>();
+        for (ArrayList<int[][]> part : parts) solutions.addAll(part);
         return solutions;
     }
-    public int[][] setCurrBoard(BFSNode leaf){
-        // sets current board based on the bfs tree
-        BFSNode currParent = leaf;
-        while(currParent.hasParent()){
-            this.currBoard[currParent.index[0]][currParent.index[1]] = currParent.value;
-            currParent = currParent.parent;
+
+    private void depthFirst(long[] board, int cell, ArrayList<int[][]> found) {
+        while (cell < CELLS && get(board, 0, cell) != 0) cell++;
+        if (cell == CELLS) {
+            found.add(unpack(board, 0));
+            return;
+        }
+        for (int m = possValues(board, 0, cell); m != 0; m &= m - 1) {
+            with(board, 0, cell, Integer.numberOfTrailingZeros(m) + 1);
+            depthFirst(board, cell + 1, found);
         }
-        return this.currBoard;
+        with(board, 0, cell, 0);
     }
-    public ArrayList<Integer> getPossValues(int[][] board, int[] index){
-        ArrayList<Integer> values = new ArrayList<Integer>();
-        if(board[index[0]][index[1]] != 0) values.add(board[index[0]][index[1]]);
-        else{
-            // start with all possible values, then remove ones found in the board
-            values.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9));
-            for(int i = 0; i < size; i++){
-                values.remove(Integer.valueOf(board[index[0]][i])); // row values
-                values.remove(Integer.valueOf(board[i][index[1]])); // column values
-            }
 
-            int rowStart = (index[0] / subSize) * subSize;
-            int colStart = (index[1] / subSize) * subSize;
-            for (int blockRow = 0; blockRow < subSize; blockRow++) {
-                for (int blockCol = 0; blockCol < subSize; blockCol++) {
-                    values.remove(Integer.valueOf(board[rowStart + blockRow][colStart + blockCol]));
-                }
+    // Bitmask of the values (bit v - 1) still allowed at a cell of a packed board
+    private static int possValues(long[] boards, int offset, int cell) {
+        int row = cell / size;
+        int col = cell % size;
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            used |= 1 << get(boards, offset, row * size + i); // row values
+            used |= 1 << get(boards, offset, i * size + col); // column values
+        }
+        int rowStart = (row / subSize) * subSize;
+        int colStart = (col / subSize) * subSize;
+        for (int blockRow = 0; blockRow < subSize; blockRow++) {
+            for (int blockCol = 0; blockCol < subSize; blockCol++) {
+                used |= 1 << get(boards, offset, (rowStart + blockRow) * size + colStart + blockCol);
             }
         }
-        return values;
+        return ~(used >>> 1) & ((1 << size) - 1);
+    }
+
+    private static int get(long[] boards, int offset, int cell) {
+        return (int)(boards[offset + (cell >>> 4)] >>> ((cell & 15) << 2)) & 15;
+    }
+
+    private static long[] with(long[] boards, int offset, int cell, int value) {
+        int shift = (cell & 15) << 2;
+        int at = offset + (cell >>> 4);
+        boards[at] = (boards[at] & ~(15L << shift)) | ((long)value << shift);
+        return boards;
+    }
+
+    private static long[] concat(long[][] parts, int count) {
+        long[] all = new long[count * WORDS];
+        int at = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, at, part.length);
+            at += part.length;
+        }
+        return all;
+    }
+
+    private static int[][] unpack(long[] boards, int offset) {
+        int[][] board = new int[size][size];
+        for (int cell = 0; cell < CELLS; cell++) board[cell / size][cell % size] = get(boards, offset, cell);
+        return board;
     }
 }
 
@@ -327,71 +378,35 @@ class sudokuDFSSearch {
     }
 
     // Public method for DLS
+    // Runs on Sudoku9Engine: bitmask candidates, fewest-options branching and in-place backtracking
+    // Returns a new solved grid, or null if there is none with at most depthLimit cells to fill
     public int[][] solve() {
-        return depthLimitedDFS(sudoku.org_sudoku, 0);
-    }
-
-    // Main method for recursive-based DLS
-    private int[][] depthLimitedDFS(int[][] board, int depth) {
-        // Exceeded depth of board
-        if (depth > depthLimit) {
-            return null;
-        }
-
-        // Get next empty cell to test
-        int[] emptySpot = findNextEmpty(board);
-        if (emptySpot == null) {
-            // No empty spots left - board is potentially solved
-            if (sudoku.checkLegal(board)) {
-                return board;
-            } else {
-                // Invalid complete board
-                return null;
-            }
-        }
-        int row = emptySpot[0];
-        int col = emptySpot[1];
-
-        // Generate possible values for current empty cell using row, column, and subgrid filters
-        ArrayList<Integer> options = sudoku.filterRow(board, row);
-        options = sudoku.filterCol(options, board, col);
-        options = sudoku.filterQuad(options, board, row, col);
-
-        // Try each valid number recursively
-        for (int val : options) {
-            int[][] newBoard = copyBoard(board);
-            newBoard[row][col] = val;
-
-            // Increase depth with each recursive call
-            int[][] result = depthLimitedDFS(newBoard, depth + 1);
-            if (result != null) {
-                return result; // Valid solution
-            }
-        }
-
-        // No solution
-        return null;
+        Sudoku9Engine engine = new Sudoku9Engine();
+        if (!engine.load(sudoku.org_sudoku) || !engine.solve(depthLimit)) return null;
+        return engine.toGrid();
     }
 
-    // Method to find the next empty cell
-    private int[] findNextEmpty(int[][] board) {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (board[i][j] == 0) {
-                    return new int[]{i, j};
-                }
-            }
-        }
-        return null;
+    // Count the solutions of the puzzle, stopping once limit is reached (2 is enough to check it is unique)
+    public long countSolutions(long limit) {
+        return countSolutions(limit, false);
     }
 
-    // Method to copy the current board state
-    private int[][] copyBoard(int[][] board) {
-        int[][] copy = new int[size][size];
-        for (int i = 0; i < size; i++) {
-            copy[i] = board[i].clone();
-        }
-        return copy;
+    public long countSolutions(long limit, boolean parallel) {
+        Sudoku9Engine engine = new Sudoku9Engine();
+        // A clue repeated in its row, column or box leaves nothing to count
+        if (!engine.load(sudoku.org_sudoku)) return 0;
+        AtomicLong found = new AtomicLong();
+        int cell = engine.mostConstrainedCell();
+        if (!parallel || cell < 0) return Math.min(engine.count(limit, found), limit);
+
+        // Split on the most constrained cell and count each of its options on its own copy of the board
+        int options = engine.options(cell);
+        IntStream.range(1, size + 1).filter(v -> (options & (1 << v)) != 0).parallel().forEach(v -> {
+            Sudoku9Engine branch = new Sudoku9Engine(engine);
+            branch.fill(cell, 1 << v);
+            branch.count(limit, found);
+        });
+        return Math.min(found.get(), limit);
     }
 
     // Method to count the number of empty cells in board
@@ -0,0 +1,196 @@
+// Allocation-free solver core for classic 9x9 puzzles, used by sudokuDFSSearch, BatchSolver and SolverDaemon
+// One byte[81] board with a used-digit bitmask (bit v for digit v) per row, column and box. The search is an
+// explicit stack of (cell, options left) frames that backtracks in place, always branching on the empty cell with
+// the fewest options, so once an engine is built no node of the search allocates anything
+// An engine is reusable through load() but not thread-safe, copy it to search branches on other threads
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class Sudoku9Engine {
+    static final int SIZE = Sudoku.SIZE;
+    static final int CELLS = SIZE * SIZE;
+    static final int ALL = ((1 << SIZE) - 1) << 1; // digits 1..9
+
+    // Row, column and box of every cell
+    private static final byte[] ROW = new byte[CELLS];
+    private static final byte[] COL = new byte[CELLS];
+    private static final byte[] BOX = new byte[CELLS];
+
+    static {
+        int sub = Sudoku.SUBGRIDSIZE;
+        for (int cell = 0; cell < CELLS; cell++) {
+            ROW[cell] = (byte)(cell / SIZE);
+            COL[cell] = (byte)(cell % SIZE);
+            BOX[cell] = (byte)((cell / SIZE / sub) * sub + (cell % SIZE) / sub);
+        }
+    }
+
+    final byte[] board = new byte[CELLS];
+    private final int[] rows = new int[SIZE];
+    private final int[] cols = new int[SIZE];
+    private final int[] boxes = new int[SIZE];
+
+    // Empty cells not on the stack are empty[0 .. emptyCount), in no particular order
+    private final byte[] empty = new byte[CELLS];
+    private int emptyCount;
+
+    private final byte[] stackCell = new byte[CELLS];
+    private final int[] stackOptions = new int[CELLS]; // options of the frame's cell not tried yet
+    private int level;                                  // frames on the stack
+    private int bestOptions; // options of the cell fewestOptions() last picked
+
+    Sudoku9Engine() {
+    }
+
+    // Copy of another engine's board, for searching one of its branches separately
+    Sudoku9Engine(Sudoku9Engine other) {
+        System.arraycopy(other.board, 0, board, 0, CELLS);
+        System.arraycopy(other.rows, 0, rows, 0, SIZE);
+        System.arraycopy(other.cols, 0, cols, 0, SIZE);
+        System.arraycopy(other.boxes, 0, boxes, 0, SIZE);
+        System.arraycopy(other.empty, 0, empty, 0, other.emptyCount);
+        this.emptyCount = other.emptyCount;
+    }
+
+    // Set up the board from a grid, 0 for an empty cell; false if a clue repeats in its row, column or box
+    boolean load(int[][] grid) {
+        Arrays.fill(rows, 0);
+        Arrays.fill(cols, 0);
+        Arrays.fill(boxes, 0);
+        emptyCount = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            int value = grid[cell / SIZE][cell % SIZE];
+            board[cell] = 0;
+            if (value == 0) {
+                empty[emptyCount++] = (byte)cell;
+                continue;
+            }
+            if ((options(cell) & (1 << value)) == 0) return false;
+            place(cell, 1 << value);
+        }
+        return true;
+    }
+
+    int[][] toGrid() {
+        int[][] grid = new int[SIZE][SIZE];
+        for (int cell = 0; cell < CELLS; cell++) grid[cell / SIZE][cell % SIZE] = board[cell];
+        return grid;
+    }
+
+    // Digits (as bits) that can still go in a cell
+    int options(int cell) {
+        return ALL & ~(rows[ROW[cell]] | cols[COL[cell]] | boxes[BOX[cell]]);
+    }
+
+    void place(int cell, int bit) {
+        board[cell] = (byte)Integer.numberOfTrailingZeros(bit);
+        rows[ROW[cell]] |= bit;
+        cols[COL[cell]] |= bit;
+        boxes[BOX[cell]] |= bit;
+    }
+
+    private void unplace(int cell) {
+        int bit = ~(1 << board[cell]);
+        board[cell] = 0;
+        rows[ROW[cell]] &= bit;
+        cols[COL[cell]] &= bit;
+        boxes[BOX[cell]] &= bit;
+    }
+
+    // Take an empty cell off the empty list, for filling it outside the search
+    void fill(int cell, int bit) {
+        for (int i = 0; i < emptyCount; i++) {
+            if (empty[i] == cell) {
+                empty[i] = empty[--emptyCount];
+                break;
+            }
+        }
+        place(cell, bit);
+    }
+
+    // Empty cell with the fewest options, -1 if the board is full
+    int mostConstrainedCell() {
+        return emptyCount == 0 ? -1 : empty[fewestOptions()];
+    }
+
+    // Position in empty[] of the empty cell with the fewest options, its options left in bestOptions
+    private int fewestOptions() {
+        int best = 0;
+        int bestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < emptyCount; i++) {
+            int options = options(empty[i]);
+            int count = Integer.bitCount(options);
+            if (count < bestCount) {
+                best = i;
+                bestCount = count;
+                bestOptions = options;
+                if (count <= 1) break;
+            }
+        }
+        return best;
+    }
+
+    // Fill the board with its first solution, if it has one and needs no more than depthLimit cells filled
+    // The search fills one cell per level, so a board with more empty cells than that cannot be finished
+    boolean solve(int depthLimit) {
+        if (emptyCount > depthLimit) return false;
+        return search(1, null) == 1;
+    }
+
+    // Count solutions up to limit; with a shared counter, stop once the total over every engine using it reaches limit
+    // The board is left as it was loaded
+    long count(long limit, AtomicLong shared) {
+        long solutions = search(limit, shared);
+        while (level > 0) pop();
+        return solutions;
+    }
+
+    private long search(long limit, AtomicLong shared) {
+        long solutions = 0;
+        level = 0;
+        while (true) {
+            if (emptyCount == 0) {
+                // Full board, stop here if that was the last one wanted, otherwise move on as from a dead end
+                solutions++;
+                if (shared != null ? shared.incrementAndGet() >= limit : solutions >= limit) return solutions;
+            }
+            else if (shared == null || shared.get() < limit) {
+                int at = fewestOptions();
+                if (bestOptions != 0) {
+                    // Push the cell, moving it out of the empty list
+                    int cell = empty[at];
+                    empty[at] = empty[--emptyCount];
+                    empty[emptyCount] = (byte)cell;
+                    stackCell[level] = (byte)cell;
+                    stackOptions[level] = bestOptions;
+                    level++;
+                }
+            }
+
+            // Move the top frame on to its next option, popping the frames that have none left
+            while (true) {
+                if (level == 0) return solutions;
+                int top = level - 1;
+                int cell = stackCell[top];
+                if (board[cell] != 0) unplace(cell);
+                int options = stackOptions[top];
+                if (options == 0 || (shared != null && shared.get() >= limit)) {
+                    pop();
+                    continue;
+                }
+                int bit = options & -options;
+                stackOptions[top] = options ^ bit;
+                place(cell, bit);
+                break;
+            }
+        }
+    }
+
+    // Drop the top frame, putting its cell back on the empty list
+    private void pop() {
+        int cell = stackCell[--level];
+        if (board[cell] != 0) unplace(cell);
+        emptyCount++; // the cell still sits at empty[emptyCount - 1], where the push left it
+    }
+}
@@ -0,0 +1,28 @@
+// SolutionWriter for the text format, "[i, j, ...] = v" per cell, the format solveDLS has always written
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+class TextSolutionWriter implements SolutionWriter {
+    public void write(NDArray board, int gridSize, WritableByteChannel channel) throws IOException {
+        int[] shape = board.shape();
+        int[] index = new int[shape.length];
+        int lineBytes = shape.length * 12 + 16; // room for the longest possible line
+        ChannelOutput out = new ChannelOutput(channel);
+
+        for (int cell = 0; cell < board.size(); cell++) {
+            out.ensure(lineBytes);
+            out.put((byte)'[');
+            for (int i = 0; i < index.length; i++) {
+                if (i > 0) out.put(", ");
+                out.putInt(index[i]);
+            }
+            out.put("] = ");
+            out.putInt(board.get(index));
+            out.put((byte)'\n');
+
+            for (int i = shape.length - 1; i >= 0 && ++index[i] == shape[i]; i--) index[i] = 0;
+        }
+        out.flush();
+    }
+}
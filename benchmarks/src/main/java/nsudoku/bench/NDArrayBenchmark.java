@@ -0,0 +1,94 @@
+package nsudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// NDArray element access, one full sweep of the board in row-major order per operation, and whole-board copies
+// storage=packed is the width NDArray picks for the grid size, storage=int forces the old int per cell for comparison
+// Run with -prof gc: the copy benchmark's gc.alloc.rate.norm is the board's footprint in bytes
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NDArrayBenchmark {
+    @Param({"2:9", "3:9", "4:16", "5:9"})
+    String shape;
+
+    @Param({"packed", "int"})
+    String storage;
+
+    Object array;
+    int[][] indices; // every cell's coordinates, built once so the sweep only measures access
+
+    @Setup
+    public void setUp() throws Throwable {
+        String[] parts = shape.split(":");
+        int dim = Integer.parseInt(parts[0]);
+        int size = Integer.parseInt(parts[1]);
+        int[] dims = new int[dim];
+        java.util.Arrays.fill(dims, size);
+        int maxValue = storage.equals("int") ? Integer.MAX_VALUE : size;
+        array = (Object) Solvers.NEW_NDARRAY_MAX.invokeExact((Object) dims, maxValue);
+
+        int cells = (int) Math.pow(size, dim);
+        for (int i = 0; i < cells; i++) Solvers.NDARRAY_SET_FLAT.invokeExact(array, i, i % (size + 1)); // a part-filled board
+        indices = new int[cells][];
+        int[] index = new int[dim];
+        for (int cell = 0; cell < cells; cell++) {
+            indices[cell] = index.clone();
+            for (int i = dim - 1; i >= 0 && ++index[i] == size; i--) index[i] = 0;
+        }
+    }
+
+    @Benchmark
+    public int get() throws Throwable {
+        int sum = 0;
+        for (int[] index : indices) sum += (int) Solvers.NDARRAY_GET.invokeExact(array, (Object) index);
+        return sum;
+    }
+
+    @Benchmark
+    public void set() throws Throwable {
+        for (int i = 0; i < indices.length; i++) Solvers.NDARRAY_SET.invokeExact(array, (Object) indices[i], i & 15);
+    }
+
+    @Benchmark
+    public int getFlat() throws Throwable {
+        int sum = 0;
+        for (int i = 0; i < indices.length; i++) sum += (int) Solvers.NDARRAY_GET_FLAT.invokeExact(array, i);
+        return sum;
+    }
+
+    @Benchmark
+    public void setFlat() throws Throwable {
+        for (int i = 0; i < indices.length; i++) Solvers.NDARRAY_SET_FLAT.invokeExact(array, i, i & 15);
+    }
+
+    // Empty cells on the board, the kind of sweep validation and hashing do
+    @Benchmark
+    public int scan() throws Throwable {
+        int empty = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if ((int) Solvers.NDARRAY_GET_FLAT.invokeExact(array, i) == 0) empty++;
+        }
+        return empty;
+    }
+
+    @Benchmark
+    public Object copy() throws Throwable {
+        return (Object) Solvers.NDARRAY_COPY.invokeExact(array);
+    }
+}
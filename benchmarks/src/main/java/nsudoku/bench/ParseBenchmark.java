@@ -0,0 +1,56 @@
+package nsudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Loading puzzle files: the clue parser on its own, and the 2D entry point that copies the clues onto its grid
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"2:9:easy2D", "2:9:medium2D", "2:9:hard2D", "3:9:easy3D", "3:9:medium3D", "3:9:hard3D", "4:16:blank4D"})
+    String board;
+
+    int dim;
+    int size;
+    String file;
+
+    @Setup
+    public void setUp() {
+        String[] parts = board.split(":");
+        dim = Integer.parseInt(parts[0]);
+        size = Integer.parseInt(parts[1]);
+        file = Solvers.input(parts[2]);
+    }
+
+    @Benchmark
+    public Object load() throws Throwable {
+        return (Object) Solvers.LOAD.invokeExact((Object) file, dim, size);
+    }
+
+    // The classic Sudoku class only reads 9x9 files
+    @State(Scope.Benchmark)
+    public static class Classic {
+        @Param({"easy2D", "medium2D", "hard2D"})
+        String puzzle;
+    }
+
+    @Benchmark
+    public Object sudoku(Classic state) throws Throwable {
+        return (Object) Solvers.NEW_SUDOKU.invokeExact((Object) Solvers.input(state.puzzle));
+    }
+}
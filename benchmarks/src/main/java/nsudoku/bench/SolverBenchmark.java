@@ -0,0 +1,101 @@
+package nsudoku.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Whole solves, including the solver setup each entry point does on a fresh object
+// Throughput and average time per solve; add -prof gc for the allocation rate
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    // Classic 9x9 solvers from the original assignment
+    @State(Scope.Benchmark)
+    public static class Classic {
+        @Param({"easy2D", "medium2D", "hard2D"})
+        String puzzle;
+
+        Object sudoku;
+
+        @Setup
+        public void load() throws Throwable {
+            sudoku = (Object) Solvers.NEW_SUDOKU.invokeExact((Object) Solvers.input(puzzle));
+        }
+    }
+
+    // N-D DLS, the 4D blank board takes seconds per solve and is left to Main
+    @State(Scope.Benchmark)
+    public static class NDimensional {
+        @Param({"2:9:easy2D", "2:9:hard2D", "3:9:easy3D", "3:9:medium3D", "3:9:hard3D", "3:9:blank3D"})
+        String board;
+
+        int dim;
+        int size;
+        String file;
+        String output;
+        Object writer;
+        PrintStream console;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            String[] parts = board.split(":");
+            dim = Integer.parseInt(parts[0]);
+            size = Integer.parseInt(parts[1]);
+            file = Solvers.input(parts[2]);
+            output = Files.createTempFile("nsudoku-bench", ".txt").toString();
+            writer = (Object) Solvers.SOLUTION_WRITER.invokeExact((Object) "dense");
+
+            // solveDLS reports on System.out after every solve, keep that out of the results
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            System.setOut(console);
+            Files.deleteIfExists(java.nio.file.Paths.get(output));
+        }
+    }
+
+    @Benchmark
+    public Object dfsSolve(Classic state) throws Throwable {
+        Object dfs = (Object) Solvers.NEW_DFS.invokeExact(state.sudoku, 81);
+        return (Object) Solvers.DFS_SOLVE.invokeExact(dfs);
+    }
+
+    @Benchmark
+    public Object bfsSearch(Classic state) throws Throwable {
+        Object bfs = (Object) Solvers.NEW_BFS.invokeExact(state.sudoku);
+        return (Object) Solvers.BFS_SEARCH.invokeExact(bfs);
+    }
+
+    @Benchmark
+    public Object solveDLS(NDimensional state) throws Throwable {
+        Object sudoku = (Object) Solvers.NEW_NSUDOKU.invokeExact(state.dim, state.size, (Object) state.file);
+        Solvers.SET_VERBOSE.invokeExact(sudoku, false);
+        Solvers.SET_OUTPUT.invokeExact(sudoku, state.writer, (Object) state.output);
+        Solvers.SOLVE_DLS.invokeExact(sudoku);
+        return sudoku;
+    }
+}
@@ -0,0 +1,89 @@
+package nsudoku.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Paths;
+
+// The solver classes live in the default package, which named packages cannot import, and JMH will not
+// generate benchmarks in the default package. So the benchmarks reach the solver through method handles,
+// looked up once and held in static finals where the JIT can inline them like direct calls
+// Handle types are erased: every object argument and result is passed as Object
+final class Solvers {
+    static final MethodHandle NEW_SUDOKU;        // Sudoku(String)
+    static final MethodHandle NEW_DFS;           // sudokuDFSSearch(Sudoku, int)
+    static final MethodHandle DFS_SOLVE;         // int[][] sudokuDFSSearch.solve()
+    static final MethodHandle NEW_BFS;           // sudokuBFSSearch(Sudoku)
+    static final MethodHandle BFS_SEARCH;        // ArrayList<int[][]> sudokuBFSSearch.BFSearch()
+    static final MethodHandle NEW_NSUDOKU;       // nSudoku(int, int, String)
+    static final MethodHandle SET_VERBOSE;       // nSudoku.verbose = boolean
+    static final MethodHandle SET_OUTPUT;        // nSudoku.setOutput(SolutionWriter, String)
+    static final MethodHandle SOLUTION_WRITER;   // SolutionWriter.of(String)
+    static final MethodHandle SOLVE_DLS;         // nSudoku.solveDLS()
+    static final MethodHandle NEW_NDARRAY;       // NDArray(int[])
+    static final MethodHandle NEW_NDARRAY_MAX;   // NDArray(int[], int)
+    static final MethodHandle NDARRAY_COPY;      // NDArray NDArray.clone_copy()
+    static final MethodHandle NDARRAY_GET;       // int NDArray.get(int[])
+    static final MethodHandle NDARRAY_SET;       // NDArray.set(int[], int)
+    static final MethodHandle NDARRAY_GET_FLAT;  // int NDArray.get(int)
+    static final MethodHandle NDARRAY_SET_FLAT;  // NDArray.set(int, int)
+    static final MethodHandle LOAD;              // NDArray PuzzleLoader.load(String, int, int)
+
+    static {
+        try {
+            Class<?> sudoku = Class.forName("Sudoku");
+            Class<?> dfs = Class.forName("sudokuDFSSearch");
+            Class<?> bfs = Class.forName("sudokuBFSSearch");
+            Class<?> nSudoku = Class.forName("nSudoku");
+            Class<?> ndArray = Class.forName("NDArray");
+            Class<?> loader = Class.forName("PuzzleLoader");
+            Class<?> writer = Class.forName("SolutionWriter");
+
+            NEW_SUDOKU = constructor(sudoku, String.class);
+            NEW_DFS = constructor(dfs, sudoku, int.class);
+            DFS_SOLVE = virtual(dfs, "solve", int[][].class);
+            NEW_BFS = constructor(bfs, sudoku);
+            BFS_SEARCH = virtual(bfs, "BFSearch", java.util.ArrayList.class);
+            NEW_NSUDOKU = constructor(nSudoku, int.class, int.class, String.class);
+            SET_VERBOSE = erase(lookup(nSudoku).findSetter(nSudoku, "verbose", boolean.class));
+            SET_OUTPUT = virtual(nSudoku, "setOutput", void.class, writer, String.class);
+            SOLUTION_WRITER = erase(lookup(writer).findStatic(writer, "of", MethodType.methodType(writer, String.class)));
+            SOLVE_DLS = virtual(nSudoku, "solveDLS", void.class);
+            NEW_NDARRAY = constructor(ndArray, int[].class);
+            NEW_NDARRAY_MAX = constructor(ndArray, int[].class, int.class);
+            NDARRAY_COPY = virtual(ndArray, "clone_copy", ndArray);
+            NDARRAY_GET = virtual(ndArray, "get", int.class, int[].class);
+            NDARRAY_SET = virtual(ndArray, "set", void.class, int[].class, int.class);
+            NDARRAY_GET_FLAT = virtual(ndArray, "get", int.class, int.class);
+            NDARRAY_SET_FLAT = virtual(ndArray, "set", void.class, int.class, int.class);
+            LOAD = erase(lookup(loader).findStatic(loader, "load", MethodType.methodType(ndArray, String.class, int.class, int.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Solvers() {
+    }
+
+    // Puzzle files are read from sudokuInput/ under the working directory unless -Dsudoku.input points elsewhere
+    static String input(String name) {
+        return Paths.get(System.getProperty("sudoku.input", "sudokuInput"), name + ".txt").toString();
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> target) throws IllegalAccessException {
+        // Most of the solver API is package-private, both sides are in the unnamed module
+        return MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+    }
+
+    private static MethodHandle constructor(Class<?> target, Class<?>... parameters) throws ReflectiveOperationException {
+        return erase(lookup(target).findConstructor(target, MethodType.methodType(void.class, parameters)));
+    }
+
+    private static MethodHandle virtual(Class<?> target, String name, Class<?> result, Class<?>... parameters) throws ReflectiveOperationException {
+        return erase(lookup(target).findVirtual(target, name, MethodType.methodType(result, parameters)));
+    }
+
+    private static MethodHandle erase(MethodHandle handle) {
+        return handle.asType(handle.type().erase());
+    }
+}
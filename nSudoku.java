@@ -2,14 +2,22 @@
 // Originally done in collaboration with https://github.com/Horizon489732 and https://github.com/jrsussner18
 // Further expanded by me after assignment completion on May 2, 2025
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.FileWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.lang.Math;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Scanner;
+import java.util.Iterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class nSudoku {
     int dimensions;
@@ -19,237 +27,633 @@ public class nSudoku {
     NDArray org_board;
     NDArray curr_board;
 
-    ArrayList<valRegister> valueRegisters; // stores possible values for each unique dimension pair
-    ArrayList<Integer> possVals = new ArrayList<Integer>(); // for the n dimensional index
-
-    BFSNode root;
-    BFSNode currNode;
-    int[] index;
-    int[] traversalIndex;
-    int[] subGridIndex = new int[2];
+    CandidateMasks masks; // used digits of every line and subgrid on the current board
+
+    // Undo trail: flat indices of the cells filled in place on curr_board, in assignment order
+    int[] trail;
+    int trailSize;
+
+    // DLS search stack, one frame per branching cell: the cell, its candidate mask,
+    // the next candidate value to try and the trail size before the cell was assigned
+    int[] frameCell;
+    long[] frameMask;
+    int[] frameNext;
+    int[] frameMark;
+    int depth;             // frames on the stack, kept between advance() calls
+    int frameCapacity;     // depth limit of the current search
+    boolean fullAtStart;   // the board was already full when the search began
+
+    CellOrdering ordering = new StaticOrdering(); // picks which empty cell each frame branches on
+    private Propagator propagator;                // fills forced cells after each assignment, made on first use
+    private boolean nakedSingles = true;          // rules the propagator is made with, both off to only branch
+    private boolean hiddenSingles = true;
+    long nodes;                                   // candidate assignments tried by the last search
+    AtomicBoolean stopFlag;                       // polled by DLS, set from another thread to stop it early
+    SearchBudget budget;                          // limits polled by DLS alongside stopFlag, null for none
+    long deadlineNanos = SearchBudget.UNLIMITED;  // the budget's deadline for the current solve
+    SolveResult.Status stopped;                   // why the last search gave up early, null if it did not
+    boolean verbose = true;                       // print search progress
+    SearchMetrics metrics = new SearchMetrics();  // totals the search adds to every 1024 nodes, shared by parallel subsolvers
+    long reportIntervalMillis = 1000;             // progress line period while solving verbosely, 0 for none
+    String metricsFile;                           // where solves write their metrics as JSON, null for nowhere
+    long backtracks;                              // frames the last search popped after trying all their candidates
+    SolutionWriter solutionWriter = new TextSolutionWriter(); // format of the saved solution
+    static final int PARALLEL_VALIDATION_CELLS = 1 << 15;    // boards this large (5D of size 9 and up) are validated in parallel
+    String outputFile = "sudokuInput/4Dout.txt";
+    boolean patternFill = true;                   // let solveDLS and solveWithin fill near-blank boards with PatternFill
+    boolean patternFilled;                        // the last solve filled the board from the pattern, without searching
+    String checkpointFile;                        // where solves save their search state, null for nowhere
+    long checkpointIntervalMillis;                // time between periodic checkpoints
+    private long nextCheckpointNanos;
+    private CheckpointWriter checkpointWriter;
+
+    // Nodes tried at each depth since the last metrics update, and the range of depths touched since then
+    private long[] depthNodes;
+    private int dirtyLow;
+    private int dirtyHigh;
+    // Counter values already added to metrics
+    private long flushedNodes;
+    private long flushedBacktracks;
+    private long flushedNaked;
+    private long flushedHidden;
+
+    int peakDepth;      // deepest the search stack has been
+    int peakTrailSize;  // trail entries when that depth was first reached
+    long peakHeapBytes; // heap in use when that depth was first reached
 
     public nSudoku(int dim, int size, String fileName){
         this.dimensions = dim;
         this.gridSize = size;
         this.subGridSize = (int)Math.sqrt(size);
-        this.index = new int[dim];
-        this.traversalIndex = new int[dim];
 
         initBoard(fileName);
-        initRegisters();
+        initMasks();
+    }
+
+    // Solver for a board already in memory, used for the independent subproblems of a parallel search
+    nSudoku(int dim, int size, NDArray board){
+        this.dimensions = dim;
+        this.gridSize = size;
+        this.subGridSize = (int)Math.sqrt(size);
+
+        this.org_board = board;
+        this.curr_board = board.clone_copy();
+        initMasks();
     }
     
     
     private void initBoard(String fileName){
-        // Initialize board based on dimensions and size
+        // Initialize board based on dimensions and size, loading the clues with PuzzleLoader
         // Set current board as a copy of original board
-    	
-    	int[] sudoku_dim = new int[dimensions];
-    	for (int i = 0; i < sudoku_dim.length; i++) {
-    		sudoku_dim[i] = this.gridSize;
-    	}
-    	this.org_board = new NDArray(sudoku_dim);
-
-        ArrayList<int[]> puzzleVals = new ArrayList<int[]>();
         try{
-            File puzzle = new File(fileName);
-            Scanner fileScanner = new Scanner(puzzle);
-            while(fileScanner.hasNextLine()){
-
-                String line = fileScanner.nextLine();
-                String[] vals = line.split(" ");
-                int[] index = new int[dimensions + 1];
-                for(int i = 0; i < dimensions + 1; i++) index[i] = Integer.parseInt(vals[i]);
-                puzzleVals.add(index);
-            }
+            this.org_board = PuzzleLoader.load(fileName, dimensions, gridSize);
         }
-        catch (FileNotFoundException error){
+        catch (IOException error){
             System.out.println("Bad File Path");
-        }
-
-        for(int[] val : puzzleVals){
-            int[] index = new int[val.length - 1];
-            for(int i = 0; i < index.length; i++) index[i] = val[i];
-            this.org_board.set(index, val[val.length-1]);
+            this.org_board = new NDArray(PuzzleLoader.shape(dimensions, gridSize));
         }
     	this.curr_board = this.org_board.clone_copy();
     }
 
-    private void initRegisters(){
-        // Once the board has been created, create the value registers for all unique pairs of dimensions
-        this.valueRegisters = new ArrayList<valRegister>();
-        
-        int[] pair = new int[2];
-        
-        for (int i = 0; i < this.dimensions; i++) {
-        	
-        	for (int j = i + 1; j < this.dimensions; j++) {
-        		
-        		pair[0] = i;
-        		pair[1] = j;
-        		
-        		valRegister register = new valRegister(pair);
-        		
-        		this.valueRegisters.add(register);
-        		
-        	}
-        	
-        }
+    private void initMasks(){
+        // Once the board has been created, record the digits used by every axis line and axis-pair subgrid
+        this.masks = new CandidateMasks(this.dimensions, this.gridSize);
+        this.masks.load(this.curr_board);
+        this.trail = new int[this.masks.cells];
+        this.trailSize = 0;
+    }
+
+    // The propagator is made here rather than in the constructors, which must not hand out this half-built
+    Propagator propagator(){
+        if (propagator == null && (nakedSingles || hiddenSingles)) propagator = new Propagator(this, nakedSingles, hiddenSingles);
+        return propagator;
+    }
+
+    void assign(int cell, int value){
+        // Fill an empty cell in place on the current board, recording it on the trail
+        setCell(cell, value);
+        this.trail[this.trailSize++] = cell;
+        this.ordering.assigned(cell);
     }
 
-    private void getCurrBoard(BFSNode leaf){
-        // Get the current board based on the dls tree
-        this.curr_board = this.org_board.clone_copy();
+    void setCell(int cell, int value){
+        // Write a value onto the current board and its candidate masks
+        this.curr_board.set(cell, value);
+        this.masks.place(cell, value);
+    }
 
-        // Using a walker node to safely walk up parent chain without altering the current solution state
-        BFSNode walker = leaf;
-        while (walker != null && walker.index != null) {
-            this.curr_board.set(walker.index, walker.value);
-            walker = walker.parent;
+    void undoTo(int mark){
+        // Pop the trail back to a previous size, clearing every cell filled since then
+        while (this.trailSize > mark) {
+            int cell = this.trail[--this.trailSize];
+            this.masks.remove(cell, this.curr_board.get(cell));
+            this.curr_board.set(cell, 0);
+            this.ordering.unassigned(cell);
         }
-        this.currNode = leaf;
     }
 
-    private void getPossVals(){
-        // Get possible values based on the intersection of possible values for registers
+    // Solver engines that can fill curr_board
+    public enum Engine { DLS, DLX }
 
-        if(this.curr_board.get(this.index) != 0){
-            this.possVals.clear();
-            this.possVals.add(this.curr_board.get(this.index));
+    public void solve(Engine engine){
+        if (engine == Engine.DLX) solveDLX();
+        else solveDLS();
+    }
+
+    public void solveDLS(){
+        // Does a DLS to find the solution, if one exists
+        // Final solution is stored within curr_board
+
+        // Perform recursive DLS
+        boolean found = instrumented(this::runDLS);
+
+        if (patternFilled) System.out.println("Filled from the subgrid pattern, no search needed.");
+        System.out.println("Nodes: " + nodes + (propagator() == null ? "" : ", naked singles: " + metrics.getNakedSingles()
+                + ", hidden singles: " + metrics.getHiddenSingles()) + ", backtracks: " + backtracks
+                + String.format(", %.1f s, %.0f nodes/s", metrics.getElapsedMillis() / 1000.0, metrics.getNodesPerSecond()));
+        System.out.println("Peak search stack: " + peakSearchBytes() + " bytes at depth " + peakDepth
+                + ", peak heap in use: " + (peakHeapBytes >> 20) + " MB");
+
+        // Save the solution if found, the search leaves it filled in on curr_board
+        if (found) saveSolution();
+        else if (stopped != null) System.out.println("Search stopped early: " + stopped);
+        else System.out.println("No solution found within depth limit.");
+    }
+
+    public SolveResult solveWithin(SearchBudget budget){
+        // Quiet DLS that gives up once the budget runs out or is cancelled, for callers that cannot wait forever
+        // A solution is left on curr_board as with solveDLS, and returned as a copy; nothing is printed or saved
+        long start = System.nanoTime();
+        this.budget = budget;
+        this.deadlineNanos = budget.deadline(start);
+        long naked = propagator() == null ? 0 : propagator().nakedCount;
+        long hidden = propagator() == null ? 0 : propagator().hiddenCount;
+        metrics.start(masks.cells);
+        boolean found;
+        try {
+            found = runDLS();
+        } finally {
+            metrics.finish();
+            this.budget = null;
+            this.deadlineNanos = SearchBudget.UNLIMITED;
         }
-        else{
-            // Reset possible values
-            this.possVals.clear();
-            for (int i = 1; i <= gridSize; i++) possVals.add(i);
-            updateRegisters();
-            removeIndexRows();
-
-            // Remove a value from possVals if it is not present in every register's possible values
-            for (int i = 1; i <= gridSize; i++) {
-                for (valRegister reg : valueRegisters) {
-                    if (!reg.possVals.contains(i)) {
-                        possVals.remove(Integer.valueOf(i));
-                        break;
-                    }
-                }
+
+        SolveResult.Status status = found ? SolveResult.Status.SOLVED
+                : stopped != null ? stopped : SolveResult.Status.UNSATISFIABLE;
+        return new SolveResult(status, found ? curr_board.clone_copy() : null, nodes, backtracks,
+                propagator() == null ? 0 : propagator().nakedCount - naked, propagator() == null ? 0 : propagator().hiddenCount - hidden,
+                peakDepth, System.nanoTime() - start);
+    }
+
+    public Future<SolveResult> submit(Executor executor, SearchBudget budget){
+        // Run solveWithin on an executor; cancelling the future also cancels the budget's token,
+        // so the search stops at its next poll instead of running on unseen
+        FutureTask<SolveResult> task = new FutureTask<SolveResult>(() -> solveWithin(budget)) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                budget.token.cancel();
+                return super.cancel(mayInterruptIfRunning);
             }
-        }
+        };
+        executor.execute(task);
+        return task;
     }
 
-    private void removeIndexRows(){
-        for(int i = 0; i < dimensions; i++){
-            System.arraycopy(this.index, 0, this.traversalIndex, 0, dimensions);
-            for(int j = 0; j < gridSize; j++){
-                traversalIndex[i] = j;
-                this.possVals.remove(Integer.valueOf(curr_board.get(traversalIndex)));
+    public void solveParallel(int threads, int splitDepth){
+        // Splits the DLS tree into independent subproblems at splitDepth and searches them on a ForkJoinPool
+        // Final solution is stored within curr_board
+        ParallelSolver parallel = new ParallelSolver(this, threads, splitDepth);
+        NDArray solution = instrumented(parallel::solve);
+
+        System.out.println("Parallel DLS: " + parallel.tasks.get() + " subproblems on " + threads + " threads, "
+                + parallel.nodes.sum() + " nodes");
+
+        // Fill the solution in through assign, so the trail, masks and ordering describe the board as after solveDLS
+        if (solution != null) {
+            ordering.init(this);
+            for (int cell = 0; cell < curr_board.size(); cell++) {
+                if (curr_board.get(cell) == 0) assign(cell, solution.get(cell));
             }
+            saveSolution();
         }
+        else System.out.println("No solution found.");
+    }
+
+    public void compareParallel(int threads, int splitDepth){
+        // Solve the board with the sequential DLS and with solveParallel's fork-join search, and print the speedup
+        // Neither solve is kept, curr_board is left as it was
+        new ParallelSolver(this, threads, splitDepth).reportSpeedup();
+    }
+
+    public void solveDLX(){
+        // Solves the board as an exact cover problem with Dancing Links
+        // Final solution is stored within curr_board, same as solveDLS
+        DancingLinks dlx = new DancingLinks(this);
+        boolean found = dlx.solve();
+
+        System.out.println("DLX columns: " + dlx.columns + ", rows: " + dlx.rows + ", rows tried: " + dlx.rowsTried
+                + ", link updates: " + dlx.updates);
+
+        if (found) saveSolution();
+        else System.out.println("No solution found.");
     }
 
-    private void updateRegisters(){
-        // For each value register, create its respective 2D board and get its possible values at the current index2D
-        for(valRegister currReg : valueRegisters){
-            currReg.possVals.clear();
-            for(int i = 1; i <= gridSize; i++) currReg.possVals.add(i);
-
-            System.arraycopy(this.index, 0, this.traversalIndex, 0, dimensions);
-            // subgrid values
-            subGridIndex[0] = (index[currReg.axisID[0]] / subGridSize) * subGridSize;
-            subGridIndex[1] = (index[currReg.axisID[1]] / subGridSize) * subGridSize;
-            for (int blockRow = 0; blockRow < subGridSize; blockRow++) {
-                for (int blockCol = 0; blockCol < subGridSize; blockCol++) {
-                    traversalIndex[currReg.axisID[0]] = subGridIndex[0] + blockRow;
-                    traversalIndex[currReg.axisID[1]] = subGridIndex[1] + blockCol;
-                    currReg.possVals.remove(Integer.valueOf(curr_board.get(traversalIndex)));
+    // Run a solve with metrics started, reported every reportIntervalMillis if verbose and saved to metricsFile
+    // Only a solve whose metrics are reported or saved puts them on JMX too, quiet ones skip the MBean server
+    private <T> T instrumented(Supplier<T> solve){
+        boolean reporting = verbose && reportIntervalMillis > 0;
+        boolean onJmx = reporting || metricsFile != null;
+        if (onJmx) metrics.registerMBean(); // before the clock starts, the first registration starts the platform MBean server
+        metrics.start(masks.cells);
+        ScheduledExecutorService reporter = reporting ? metrics.startReporter(reportIntervalMillis, System.out) : null;
+        try {
+            return solve.get();
+        } finally {
+            metrics.finish();
+            if (reporter != null) reporter.shutdownNow();
+            if (onJmx) metrics.unregisterMBean();
+            if (metricsFile != null) {
+                try {
+                    metrics.writeJson(metricsFile);
+                } catch (IOException e) {
+                    System.out.println("An error occurred.");
                 }
             }
         }
     }
 
-    public void solveDLS(){
-        // Does a DLS to find the solution, if one exists
-        // Final solution is stored within curr_board
+    public void setMetricsOutput(String fileName, long reportIntervalMillis){
+        // Save each solve's metrics as JSON to fileName (null for none) and print progress at the given period
+        this.metricsFile = fileName;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
 
-        // Perform recursive DLS
-        boolean found = DLS(curr_board.size());
+    public void setOutput(SolutionWriter writer, String fileName){
+        // Choose the format and file solutions are saved to, text to sudokuInput/4Dout.txt by default
+        this.solutionWriter = writer;
+        this.outputFile = fileName;
+    }
+
+    // curr_board is full and breaks no rule
+    public boolean isSolved(){
+        return BoardValidator.isSolved(curr_board, dimensions, gridSize, curr_board.size() >= PARALLEL_VALIDATION_CELLS);
+    }
+
+    private void saveSolution(){
+        if (!isSolved()) System.out.println("Solution failed validation.");
+        try {
+            solutionWriter.write(curr_board, gridSize, outputFile);
+        } catch (IOException e) {
+            System.out.println("An error occurred.");
+        }
+    }
 
-        // Save the solution if found
-        if (found) {
-            getCurrBoard(currNode);
+    // DLS over the whole board, picking up from the checkpoint file if there is one
+    // A search that ends (solved or exhausted) removes its checkpoint; one stopped early leaves a final one behind
+    private boolean runDLS(){
+        if (checkpointFile == null) return fillFromPattern() || DLS(curr_board.size());
+        nextCheckpointNanos = System.nanoTime() + checkpointIntervalMillis * 1_000_000L;
+        boolean found = resume(checkpointFile) ? advance() : fillFromPattern() || DLS(curr_board.size());
+        checkpointWriter.await();
+        if (stopped == null) {
             try {
-                FileWriter w = new FileWriter("sudokuInput/4Dout.txt");
-                w.write(curr_board.toString());
-                w.close();
+                Files.deleteIfExists(Paths.get(checkpointFile));
             } catch (IOException e) {
                 System.out.println("An error occurred.");
             }
-        } else {
-            System.out.println("No solution found within depth limit.");
         }
+        return found;
+    }
+
+    // Fill a board with at most gridSize clues from PatternFill, leaving it on the trail as a search would
+    // False, with the board as it was, if it has more clues or the pattern cannot be fitted to them
+    private boolean fillFromPattern(){
+        patternFilled = false;
+        if (!patternFill || !PatternFill.fill(this, gridSize)) return false;
+        resetSearch(1);
+        ordering.init(this);
+        patternFilled = true;
+        return true;
+    }
+
+    public void setPatternFill(boolean enabled){
+        // Turn the constructive fill of near-blank boards on or off, off to always search
+        this.patternFill = enabled;
+    }
+
+    public void setCheckpoint(String fileName, long intervalMillis){
+        // Save the search state to fileName every intervalMillis (and when a budget or stop flag ends it early),
+        // and resume from it if it already exists; null to turn checkpoints off
+        if (checkpointWriter != null) checkpointWriter.close();
+        this.checkpointFile = fileName;
+        this.checkpointIntervalMillis = intervalMillis;
+        this.checkpointWriter = fileName == null ? null : new CheckpointWriter(fileName);
+    }
+
+    // Restore the search state saved in a checkpoint file, so advance() carries on where that search was
+    // Returns false if there is no such file; throws if it was saved from another puzzle or with other settings
+    public boolean resume(String fileName){
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.read(fileName);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            System.out.println("An error occurred.");
+            return false;
+        }
+        checkpoint.check(this);
+
+        undoTo(0);
+        resetSearch(checkpoint.frameCapacity);
+        for (int i = 0; i < checkpoint.trail.length; i++) {
+            setCell(checkpoint.trail[i], checkpoint.values[i] & 0xFF);
+            trail[trailSize++] = checkpoint.trail[i];
+        }
+        ordering.init(this);
+        this.depth = checkpoint.depth;
+        System.arraycopy(checkpoint.frameCell, 0, frameCell, 0, depth);
+        System.arraycopy(checkpoint.frameNext, 0, frameNext, 0, depth);
+        System.arraycopy(checkpoint.frameMark, 0, frameMark, 0, depth);
+        System.arraycopy(checkpoint.frameMask, 0, frameMask, 0, depth * masks.words);
+        this.nodes = this.flushedNodes = checkpoint.nodes;
+        this.backtracks = this.flushedBacktracks = checkpoint.backtracks;
+        if (propagator() != null) {
+            propagator().nakedCount = this.flushedNaked = checkpoint.nakedCount;
+            propagator().hiddenCount = this.flushedHidden = checkpoint.hiddenCount;
+        }
+        return true;
+    }
+
+    // Hand a copy of the search state to the checkpoint writer
+    private void saveCheckpoint(boolean force){
+        nextCheckpointNanos = System.nanoTime() + checkpointIntervalMillis * 1_000_000L;
+        checkpointWriter.submit(Checkpoint.of(this), force);
     }
 
     // Algorithm for Depth Limited Search
-    private boolean DLS(int limit){
-        this.root = new BFSNode();
-        this.index = computeIndexFromFlat(0);
-        getPossVals();
-
-        for(int v: possVals) root.addNewChild(v, index);
-        currNode = root.children.getFirst();
-        int depth = 1;
-        int maxDepth = 0;
-
-        while(depth < limit){
-            if(depth > maxDepth) {
-                maxDepth = depth;
-                System.out.println("Max Depth: " + maxDepth);
+    boolean DLS(int limit){
+        return search(limit, 1) == 1;
+    }
+
+    // The search is an explicit stack of primitive frames, so memory stays O(depth) however many nodes are expanded
+    // Stops after maxSolutions full boards, leaving the last one on curr_board, and returns how many it found
+    long search(int limit, long maxSolutions){
+        long solutions = 0;
+        begin(limit);
+        while (solutions < maxSolutions && advance()) solutions++;
+        return solutions;
+    }
+
+    // Set up the search stack from the current board, branching on the cell the ordering picks first
+    // advance() then walks to each solution in turn; false if the board is already contradictory
+    boolean begin(int limit){
+        if (!beginSearch(limit)) return false;
+        int cell = ordering.select();
+        if (cell < 0) {
+            this.fullAtStart = true; // nothing left to fill, the board itself is the only solution
+            return true;
+        }
+        masks.candidates(cell, frameMask, 0);
+        return pushFirstFrame(cell);
+    }
+
+    // Same, but the first frame branches on a given cell over the given candidates only,
+    // used to hand part of another search's frame to a new solver
+    boolean begin(int limit, int cell, long[] candidates){
+        if (!beginSearch(limit)) return false;
+        System.arraycopy(candidates, 0, frameMask, 0, masks.words);
+        return pushFirstFrame(cell);
+    }
+
+    private boolean beginSearch(int limit){
+        resetSearch(limit);
+        return prepare();
+    }
+
+    // Empty search stack and counters for a search down to limit
+    private void resetSearch(int limit){
+        int words = masks.words;
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.flushedNodes = 0;
+        this.flushedBacktracks = 0;
+        this.flushedNaked = propagator() == null ? 0 : propagator().nakedCount;
+        this.flushedHidden = propagator() == null ? 0 : propagator().hiddenCount;
+        this.stopped = null;
+        this.depth = 0;
+        this.fullAtStart = false;
+        this.frameCapacity = Math.max(1, Math.min(limit, masks.cells));
+        this.frameCell = new int[frameCapacity];
+        this.frameMask = new long[frameCapacity * words];
+        this.frameNext = new int[frameCapacity];
+        this.frameMark = new int[frameCapacity];
+        this.depthNodes = new long[frameCapacity];
+        this.dirtyLow = Integer.MAX_VALUE;
+        this.dirtyHigh = -1;
+        this.peakDepth = 0;
+        this.peakTrailSize = 0;
+        this.peakHeapBytes = 0;
+    }
+
+    private boolean pushFirstFrame(int cell){
+        if (CandidateMasks.isEmpty(frameMask, 0, masks.words)) {
+            undoTo(0);
+            return false;
+        }
+        pushFrame(depth++, cell);
+        return true;
+    }
+
+    // Run the search on to its next full board, left on curr_board, and return true
+    // Returns false once the tree is exhausted (or stopFlag or the budget stopped it), with the board back to how it started
+    // Every frame keeps its place between calls, so the next call resumes right after the last solution
+    boolean advance(){
+        int words = masks.words;
+        if (fullAtStart) {
+            fullAtStart = false;
+            metrics.solutions.increment();
+            flushMetrics();
+            return true;
+        }
+
+        while(depth > 0){
+            if(depth > peakDepth) {
+                peakDepth = depth;
+                peakTrailSize = trailSize;
+                Runtime runtime = Runtime.getRuntime();
+                peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+            }
+            if ((nodes & 1023) == 0) {
+                flushMetrics();
+                if (checkpointWriter != null && System.nanoTime() - nextCheckpointNanos >= 0) saveCheckpoint(false);
             }
-            this.index = computeIndexFromFlat(depth);
-            getCurrBoard(this.currNode);
-            getPossVals();
-
-            if(this.possVals.isEmpty()){
-                while(true){
-                    depth--;
-                    if(this.currNode.parent == null) return false;
-                    this.currNode = this.currNode.parent;
-
-                    if(this.currNode.childInd < this.currNode.children.size() - 1){
-                        this.currNode.childInd++;
-                        this.currNode = this.currNode.children.get(this.currNode.childInd);
-                        depth++;
-                        break;
-                    }
+            // A node can take a millisecond on large boards, so stop requests are polled far more often than that
+            if ((nodes & 15) == 0 || budget != null && nodes >= budget.maxNodes) {
+                stopped = stopReason();
+                if (stopped != null) {
+                    if (checkpointWriter != null) saveCheckpoint(true);
+                    depth = 0;
+                    break;
                 }
             }
-            else{
-                for(int v: possVals) this.currNode.addNewChild(v, index);
-                this.currNode = this.currNode.children.getFirst();
-                depth++;
+
+            // Try the next candidate of the top frame, backtracking once it has none left
+            int top = depth - 1;
+            undoTo(frameMark[top]);
+            int value = CandidateMasks.nextValue(frameMask, top * words, words, frameNext[top]);
+            if (value < 0) {
+                depth--;
+                backtracks++;
+                continue;
+            }
+            frameNext[top] = value + 1;
+            assign(frameCell[top], value);
+            nodes++;
+            depthNodes[top]++;
+            if (top < dirtyLow) dirtyLow = top;
+            if (top > dirtyHigh) dirtyHigh = top;
+            if (propagator() != null && !propagator().propagate(trailSize - 1)) continue;
+
+            int cell = ordering.select();
+            if (cell < 0) {
+                // Full board, the next call carries on from the top frame
+                metrics.solutions.increment();
+                flushMetrics();
+                return true;
             }
+            if (depth == frameCapacity) continue; // depth limit reached, move on to the next candidate
+
+            masks.candidates(cell, frameMask, depth * words);
+            if (CandidateMasks.isEmpty(frameMask, depth * words, words)) continue;
+            pushFrame(depth++, cell);
         }
-        return true;
+        flushMetrics();
+        undoTo(0);
+        return false;
     }
 
-    // Method to convert a flat array index into an n-dimensional index
-    private int[] computeIndexFromFlat(int flatIndex) {
-        int[] result = new int[dimensions];
-        int[] dims = curr_board.shape();
-        int[] multipliers = new int[dimensions];
+    // Why the search should give up now, null to carry on
+    private SolveResult.Status stopReason(){
+        if (stopFlag != null && stopFlag.get()) return SolveResult.Status.CANCELLED;
+        if (budget == null) return null;
+        if (budget.token.isCancelled() || Thread.currentThread().isInterrupted()) return SolveResult.Status.CANCELLED;
+        if (nodes >= budget.maxNodes) return SolveResult.Status.TIMED_OUT;
+        if (deadlineNanos != SearchBudget.UNLIMITED && System.nanoTime() - deadlineNanos >= 0) return SolveResult.Status.TIMED_OUT;
+        return null;
+    }
 
-        // Compute dimension multipliers for index conversion
-        multipliers[dimensions - 1] = 1;
-        for (int i = dimensions - 2; i >= 0; i--) {
-            multipliers[i] = multipliers[i + 1] * dims[i + 1];
+    // Add what the search counted since the last call to metrics
+    private void flushMetrics(){
+        metrics.nodes.add(nodes - flushedNodes);
+        metrics.backtracks.add(backtracks - flushedBacktracks);
+        flushedNodes = nodes;
+        flushedBacktracks = backtracks;
+        if (propagator() != null) {
+            metrics.nakedSingles.add(propagator().nakedCount - flushedNaked);
+            metrics.hiddenSingles.add(propagator().hiddenCount - flushedHidden);
+            flushedNaked = propagator().nakedCount;
+            flushedHidden = propagator().hiddenCount;
         }
+        if (dirtyHigh >= 0) {
+            metrics.addDepthCounts(depthNodes, dirtyLow, dirtyHigh);
+            dirtyLow = Integer.MAX_VALUE;
+            dirtyHigh = -1;
+        }
+        metrics.depth = depth;
+        metrics.maxDepth.accumulate(peakDepth);
+    }
+
+    // Copy of the current board with every cell filled after trail position mark cleared again,
+    // the board as the search saw it when that part of the trail was written
+    NDArray boardAt(int mark){
+        NDArray board = curr_board.clone_copy();
+        for (int i = mark; i < trailSize; i++) board.set(trail[i], 0);
+        return board;
+    }
+
+    // Solver for another board with the same ordering and propagation settings as this one
+    nSudoku copyWith(NDArray board){
+        nSudoku copy = new nSudoku(dimensions, gridSize, board);
+        copy.verbose = verbose;
+        copy.setOrdering(ordering.copy());
+        if (propagator() == null) copy.setPropagation(false, false);
+        else copy.setPropagation(propagator().nakedSingles, propagator().hiddenSingles);
+        return copy;
+    }
+
+    // Lazily enumerate the solutions of the puzzle, each one a fresh copy; like countSolutions it starts from the clues,
+    // whether or not the board has been solved
+    // The search runs on its own copy of the board and only as far as the consumer pulls,
+    // so findFirst() or limit(k) stop it early. A parallel stream splits it between threads
+    public Stream<NDArray> solutions(){
+        return StreamSupport.stream(SolutionSpliterator.of(this), false);
+    }
 
-        // Decompose flat index into multi-dimensional coordinates
-        for (int i = 0; i < dimensions; i++) {
-            result[i] = flatIndex / multipliers[i];
-            flatIndex = flatIndex % multipliers[i];
+    public Iterator<NDArray> solutionIterator(){
+        return Spliterators.iterator(SolutionSpliterator.of(this));
+    }
+
+    // Count the solutions of the puzzle, stopping once limit is reached (2 is enough to check it is unique)
+    // The count starts from the clues, so a board an earlier solve filled is emptied first and filled again after it
+    public long countSolutions(long limit){
+        int[] filled = Arrays.copyOf(trail, trailSize);
+        int[] values = new int[filled.length];
+        for (int i = 0; i < filled.length; i++) values[i] = curr_board.get(filled[i]);
+        undoTo(0);
+        boolean wasVerbose = verbose;
+        verbose = false;
+        long count = search(curr_board.size(), limit);
+        verbose = wasVerbose;
+        undoTo(0);
+        for (int i = 0; i < filled.length; i++) assign(filled[i], values[i]);
+        return count;
+    }
+
+    // Same count split across a ForkJoinPool, see ParallelSolver; it also starts from the clues, curr_board is not touched
+    public long countSolutions(long limit, int threads, int splitDepth){
+        return new ParallelSolver(this, threads, splitDepth).countSolutions(limit);
+    }
+
+    // Set up ordering and propagate the current board before branching, false if it is already contradictory
+    boolean prepare() {
+        ordering.init(this);
+        if (propagator() != null && !propagator().propagateAll()) {
+            undoTo(0);
+            return false;
         }
+        return true;
+    }
+
+    // Set up the frame for a cell whose candidates are already in frameMask
+    private void pushFrame(int depth, int cell) {
+        frameCell[depth] = cell;
+        frameNext[depth] = 1;
+        frameMark[depth] = trailSize;
+    }
+
+    public void setPropagation(boolean nakedSingles, boolean hiddenSingles) {
+        // Choose the propagation rules run after every assignment, both off to only branch
+        this.nakedSingles = nakedSingles;
+        this.hiddenSingles = hiddenSingles;
+        this.propagator = null;
+    }
+
+    public void setOrdering(CellOrdering ordering) {
+        // Choose how DLS picks the next cell: StaticOrdering (row-major), MrvOrdering or MrvDegreeOrdering
+        this.ordering = ordering;
+    }
 
-        return result;
+    // Value currently on the board at a flat index
+    int cellValue(int cell) {
+        return this.curr_board.get(cell);
+    }
+
+    // Bytes held by the search stack and trail at the deepest point of the last search
+    public long peakSearchBytes() {
+        // Each frame is three ints and a candidate mask, each trail entry one int
+        long frameBytes = 3L * Integer.BYTES + (long)masks.words * Long.BYTES;
+        return peakDepth * frameBytes + (long)peakTrailSize * Integer.BYTES;
     }
 
     public void printBoard(int[][] board) {
@@ -268,109 +672,3 @@ public class nSudoku {
         }
     }
 }
-
-class valRegister {
-    int[] axisID = new int[2]; // The dimension pair for a particular register
-    ArrayList<Integer> possVals;
-
-    valRegister(int[] id){
-        this.axisID[0] = id[0];
-        this.axisID[1] = id[1];
-        possVals = new ArrayList<Integer>();
-    }
-}
-
-class NDArray {
-	
-	private int[] array; 	   //our actual array that holds all the data
-	private int[] dimensions;  //how many dimension
-	private int[] multipliers; //how far you move in one direction
-	
-	NDArray(int[] dimensions) {
-        // Initializes the n dimensional array
-	    int arraySize = 1;
-
-	    multipliers = new int[dimensions.length];
-	    for (int idx = dimensions.length - 1; idx >= 0; idx--) {
-	      multipliers[idx] = arraySize;
-	      arraySize *= dimensions[idx];
-	    }
-	    array = new int[arraySize];
-	    this.dimensions = dimensions;
-	  }
-	
-	public int size() {
-	    return array.length;
-	}
-	
-	public int[] shape() {
-	    return dimensions.clone();
-	}
-	
-	public int get(int[] indices) {
-        // Get a particular value in the array
-		if (indices.length != dimensions.length) {
-            System.out.print(indices.length + " " + dimensions.length);
-	        throw new IllegalArgumentException("Incorrect number of indices");
-	    }
-		
-	    int internalIndex = 0;
-
-	    for (int idx = 0; idx < indices.length; idx++) {
-	      internalIndex += indices[idx] * multipliers[idx];
-	    }
-	    return array[internalIndex];
-	}
-	
-	public void set(int[] indices, int value) {
-        // Set a particular value in the array
-		if (indices.length != dimensions.length) {
-	        throw new IllegalArgumentException("Incorrect number of indices");
-	    }
-		
-	    int internalIndex = 0;
-
-	    for (int idx = 0; idx < indices.length; idx++) {
-	        internalIndex += indices[idx] * multipliers[idx];
-	    }
-	    array[internalIndex] = value;
-	}
-	
-	public NDArray clone_copy() {
-        // Duplicates the n dimensional array
-        NDArray newNDArray = new NDArray(this.dimensions.clone());
-
-        newNDArray.multipliers = this.multipliers.clone();
-        newNDArray.array = this.array.clone();
-
-        return newNDArray;
-    }
-	
-	
-	@Override
-	public String toString() {
-		
-		StringBuilder strResult = new StringBuilder();
-		
-		int[] indices = new int[dimensions.length];
-		int value;
-		int flatIndex;
-		
-		for (int i = 0; i < array.length; i++) {
-		    value = array[i];
-		    
-		    flatIndex = i;
-		    for (int idx = 0; idx < dimensions.length; idx++) {
-		        indices[idx] = flatIndex / multipliers[idx];
-		        flatIndex %= multipliers[idx];
-		    }
-
-		    strResult.append(Arrays.toString(indices))
-            		 .append(" = ")
-            		 .append(value)
-            		 .append("\n");
-		}
-
-		return strResult.toString();
-	}
-}
@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CountSolutionsTest {
+
+    // Quiet solver for one of the boards in sudokuInput/
+    private static nSudoku load(int dim, String name) {
+        nSudoku sudoku = new nSudoku(dim, 9, "sudokuInput/" + name + ".txt");
+        sudoku.verbose = false;
+        return sudoku;
+    }
+
+    @Test
+    void countsFromTheClues() {
+        assertEquals(31, load(2, "medium2D").countSolutions(100));
+        assertEquals(2, load(3, "hard3D").countSolutions(10));
+    }
+
+    @Test
+    void countsFromTheCluesAfterASolve() {
+        nSudoku medium = load(2, "medium2D");
+        assertEquals(SolveResult.Status.SOLVED, medium.solveWithin(SearchBudget.unlimited()).status);
+        String solved = medium.curr_board.toString();
+        assertEquals(31, medium.countSolutions(100));
+        assertEquals(solved, medium.curr_board.toString());
+        assertEquals(31, medium.countSolutions(100, 2, 2));
+        assertEquals(solved, medium.curr_board.toString());
+
+        nSudoku hard = load(3, "hard3D");
+        assertEquals(SolveResult.Status.SOLVED, hard.solveWithin(SearchBudget.unlimited()).status);
+        assertEquals(2, hard.countSolutions(10));
+        assertEquals(2, hard.countSolutions(10, 2, 2));
+        assertTrue(hard.isSolved());
+    }
+
+    @Test
+    void countsFromTheCluesAfterAParallelSolve(@TempDir Path dir) {
+        nSudoku hard = load(3, "hard3D");
+        hard.setOutput(SolutionWriter.of("text"), dir.resolve("out.txt").toString());
+        hard.solveParallel(2, 2);
+        assertTrue(hard.isSolved());
+        String solved = hard.curr_board.toString();
+        assertEquals(2, hard.countSolutions(10));
+        assertEquals(solved, hard.curr_board.toString());
+
+        // The solve went onto the trail, so undoing it gives the clues back
+        hard.undoTo(0);
+        assertEquals(hard.org_board.toString(), hard.curr_board.toString());
+    }
+}
@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DancingLinksTest {
+    private static final Duration LIMIT = Duration.ofSeconds(10);
+
+    // Solve with DLX, without the printing and saving of solveDLX, and check the result keeps the clues
+    private static void solves(nSudoku sudoku) {
+        DancingLinks dlx = new DancingLinks(sudoku);
+        assertTimeoutPreemptively(LIMIT, () -> assertTrue(dlx.solve()));
+        assertTrue(sudoku.isSolved());
+        for (int cell = 0; cell < sudoku.org_board.size(); cell++) {
+            if (sudoku.org_board.get(cell) != 0) assertEquals(sudoku.org_board.get(cell), sudoku.curr_board.get(cell));
+        }
+    }
+
+    @Test
+    void solvesBlank3D() {
+        solves(new nSudoku(3, 9, "sudokuInput/blank3D.txt"));
+    }
+
+    @Test
+    void solvesSparse3D() throws IOException {
+        // Every third clue of hard3D, the first 5 to 30 of them
+        List<String> clues = Files.readAllLines(Paths.get("sudokuInput/hard3D.txt"));
+        for (int count = 5; count <= 30; count += 5) {
+            StringBuilder board = new StringBuilder();
+            for (int i = 0; i < count; i++) board.append(clues.get(3 * i)).append('\n');
+            NDArray sparse = PuzzleLoader.parse(ByteBuffer.wrap(board.toString().getBytes(StandardCharsets.US_ASCII)), 3, 9);
+            solves(new nSudoku(3, 9, sparse));
+        }
+    }
+
+    @Test
+    void solvesClued3D() {
+        solves(new nSudoku(3, 9, "sudokuInput/hard3D.txt"));
+        solves(new nSudoku(3, 9, "sudokuInput/medium3D.txt"));
+    }
+}
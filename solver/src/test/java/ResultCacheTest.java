@@ -0,0 +1,21 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class ResultCacheTest {
+
+    @Test
+    void jsonIgnoresTheDefaultLocale() throws IOException {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            String json = new ResultCache(1000).toJson();
+            assertTrue(json.contains("\"hitRate\": 0.000,"), json);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
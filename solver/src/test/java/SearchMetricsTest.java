@@ -0,0 +1,25 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class SearchMetricsTest {
+
+    @Test
+    void jsonIgnoresTheDefaultLocale() throws InterruptedException {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            SearchMetrics metrics = new SearchMetrics();
+            metrics.start(10);
+            metrics.nodes.add(12345);
+            Thread.sleep(5);
+            metrics.finish();
+            String json = metrics.toJson();
+            assertTrue(json.matches(".*\"nodesPerSecond\": [0-9]+\\.[0-9], .*"), json);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+class SolutionStreamTest {
+
+    private static nSudoku medium2D() {
+        nSudoku sudoku = new nSudoku(2, 9, "sudokuInput/medium2D.txt");
+        sudoku.verbose = false;
+        return sudoku;
+    }
+
+    @Test
+    void streamsEverySolution() {
+        assertEquals(31, medium2D().solutions().count());
+        assertEquals(31, medium2D().solutions().parallel().map(NDArray::toString).distinct().count());
+    }
+
+    @Test
+    void streamsEverySolutionAfterASolve() {
+        nSudoku sudoku = medium2D();
+        assertEquals(SolveResult.Status.SOLVED, sudoku.solveWithin(SearchBudget.unlimited()).status);
+        assertEquals(31, sudoku.solutions().count());
+
+        int seen = 0;
+        for (Iterator<NDArray> it = sudoku.solutionIterator(); it.hasNext(); seen++) assertTrue(it.next() != null);
+        assertEquals(31, seen);
+        assertTrue(sudoku.isSolved());
+    }
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class SolverDaemonTest {
+    private static SolverDaemon daemon;
+
+    @BeforeAll
+    static void start() throws IOException, InterruptedException {
+        daemon = new SolverDaemon(0, 1);
+        daemon.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        daemon.stop();
+    }
+
+    private static Map<String, String> params(String... pairs) {
+        Map<String, String> params = new HashMap<String, String>();
+        for (int i = 0; i < pairs.length; i += 2) params.put(pairs[i], pairs[i + 1]);
+        return params;
+    }
+
+    private static String rejection(Map<String, String> params) {
+        byte[] puzzle = "0 0 1\n".getBytes(StandardCharsets.US_ASCII);
+        return assertThrows(IllegalArgumentException.class, () -> daemon.answer(params, puzzle)).getMessage();
+    }
+
+    @Test
+    void statsLeaveOutTheWarmUp() throws IOException {
+        String stats = get("/stats");
+        assertTrue(stats.contains("\"batches\":0,\"batched\":0,"), stats);
+    }
+
+    @Test
+    void statsIgnoreTheDefaultLocale() throws IOException {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            String stats = get("/stats");
+            assertTrue(stats.contains("\"meanBatch\":0.00,"), stats);
+            assertTrue(stats.contains("\"hitRate\": 0.000,"), stats);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void timeoutIsCheckedForEveryBoard() {
+        assertEquals("timeoutMs 0 is not positive", rejection(params("timeoutMs", "0")));
+        assertEquals("timeoutMs 0 is not positive", rejection(params("timeoutMs", "0", "dim", "3")));
+    }
+
+    @Test
+    void badShapesSayWhatIsWrong() {
+        assertEquals("Dimension 0 is below 1", rejection(params("dim", "0")));
+        assertEquals("Size 0 is below 1", rejection(params("size", "0")));
+        assertEquals("Size 6 is not a perfect square, subgrids are square", rejection(params("size", "6")));
+    }
+
+    private static String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + daemon.port() + path).toURL().openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}